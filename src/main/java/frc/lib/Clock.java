@@ -0,0 +1,40 @@
+package frc.lib;
+
+import edu.wpi.first.math.MathSharedStore;
+import java.util.function.DoubleSupplier;
+
+/**
+ * the time source shared by frc.lib. it reads the robot clock unless another
+ * source is plugged in, which lets simulations run routines faster than real
+ * time
+ */
+public final class Clock {
+
+    private static final DoubleSupplier kDefaultSource =
+        MathSharedStore::getTimestamp;
+
+    private static DoubleSupplier source = kDefaultSource;
+
+    private Clock() {}
+
+    /** @return the current time in seconds */
+    public static double getTime() {
+        return source.getAsDouble();
+    }
+
+    public static void setSource(DoubleSupplier source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Clock source cannot be null");
+        }
+        Clock.source = source;
+    }
+
+    /** goes back to reading the robot clock */
+    public static void useDefaultSource() {
+        source = kDefaultSource;
+    }
+
+    public static boolean isDefaultSource() {
+        return source == kDefaultSource;
+    }
+}
@@ -0,0 +1,194 @@
+package frc.lib;
+
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * configures devices in the background so robot startup is not held up by
+ * blocking CAN round trips. tasks for different devices run in parallel,
+ * tasks for the same device run in the order they were submitted, and failed
+ * tasks are retried. once every task submitted at startup is done, or the
+ * deadline passes, a timing report is logged. tasks submitted after that are
+ * only reported if they fail
+ */
+public final class DeviceConfigurator {
+
+    private static final int kThreadCount = 4;
+    private static final int kMaxAttempts = 3;
+    private static final double kDeadlineSeconds = 10;
+
+    /** one configuration step, returns true if the device accepted it */
+    @FunctionalInterface
+    public interface Task {
+        boolean apply();
+    }
+
+    private record Pending(String device, CompletableFuture<Result> future) {}
+
+    private record Result(
+        String device,
+        boolean succeeded,
+        int attempts,
+        double seconds,
+        // the exception thrown by the last failed attempt, if any
+        RuntimeException lastException
+    ) {}
+
+    private static final ExecutorService executor =
+        Executors.newFixedThreadPool(kThreadCount, runnable -> {
+            Thread thread = new Thread(runnable, "DeviceConfigurator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    // last task of each device, the next one is chained after it
+    private static final Map<String, CompletableFuture<Result>> deviceTails =
+        new HashMap<>();
+    // startup tasks that have not been reported yet
+    private static final List<Pending> pending = new ArrayList<>();
+    private static boolean reportScheduled;
+    // set once the startup report is logged, read by the pool threads
+    private static volatile boolean startupReported;
+
+    private DeviceConfigurator() {}
+
+    /**
+     * queues a configuration step for a device
+     *
+     * @return a future that completes with whether the step succeeded
+     */
+    public static synchronized CompletableFuture<Boolean> submit(
+        String device,
+        Task task
+    ) {
+        CompletableFuture<Result> tail = deviceTails.get(device);
+        CompletableFuture<Result> future = tail == null
+            ? CompletableFuture.supplyAsync(() -> run(device, task), executor)
+            : tail.handleAsync((result, e) -> run(device, task), executor);
+        deviceTails.put(device, future);
+        if (!startupReported) {
+            pending.add(new Pending(device, future));
+            scheduleReport();
+        }
+        return future.thenApply(Result::succeeded);
+    }
+
+    /** @return true once every submitted task has finished */
+    public static synchronized boolean isDone() {
+        for (CompletableFuture<Result> tail : deviceTails.values()) {
+            if (!tail.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Result run(String device, Task task) {
+        long start = System.nanoTime();
+        int attempts = 0;
+        boolean succeeded = false;
+        RuntimeException lastException = null;
+        while (!succeeded && attempts < kMaxAttempts) {
+            attempts++;
+            try {
+                succeeded = task.apply();
+            } catch (RuntimeException e) {
+                succeeded = false;
+                lastException = e;
+            }
+        }
+        Result result = new Result(
+            device,
+            succeeded,
+            attempts,
+            (System.nanoTime() - start) / 1e9,
+            succeeded ? null : lastException
+        );
+        if (!succeeded && startupReported) {
+            // runtime tasks are not in a report, so failures are raised here
+            DriverStation.reportError(
+                "Device configuration failed: " + describe(result),
+                false
+            );
+        }
+        return result;
+    }
+
+    private static String describe(Result result) {
+        String line = String.format(
+            "%s: %s in %.1f ms, %d attempt(s)",
+            result.device,
+            result.succeeded ? "ok" : "FAILED",
+            result.seconds * 1e3,
+            result.attempts
+        );
+        return result.lastException == null
+            ? line
+            : line + ", last error: " + result.lastException;
+    }
+
+    private static void scheduleReport() {
+        if (reportScheduled) {
+            return;
+        }
+        reportScheduled = true;
+        // only started for the startup burst. it waits on its own thread so
+        // the pool keeps every thread for devices
+        Thread reporter = new Thread(
+            DeviceConfigurator::report,
+            "DeviceConfiguratorReport"
+        );
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    private static void report() {
+        long start = System.nanoTime();
+        long deadline = start + (long) (kDeadlineSeconds * 1e9);
+        StringBuilder report = new StringBuilder("Device configuration:\n");
+        boolean allSucceeded = true;
+        while (true) {
+            Pending next;
+            synchronized (DeviceConfigurator.class) {
+                if (pending.isEmpty()) {
+                    startupReported = true;
+                    break;
+                }
+                next = pending.remove(0);
+            }
+            try {
+                Result result = next.future.get(
+                    Math.max(0, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS
+                );
+                allSucceeded &= result.succeeded;
+                report.append("  " + describe(result) + "\n");
+            } catch (TimeoutException e) {
+                allSucceeded = false;
+                report.append("  " + next.device + ": missed the deadline\n");
+            } catch (Exception e) {
+                allSucceeded = false;
+                report.append("  " + next.device + ": " + e + "\n");
+            }
+        }
+        report.append(
+            String.format(
+                "  total %.1f ms",
+                (System.nanoTime() - start) / 1e6
+            )
+        );
+        DataLogManager.log(report.toString());
+        if (!allSucceeded) {
+            DriverStation.reportError(report.toString(), false);
+        }
+    }
+}
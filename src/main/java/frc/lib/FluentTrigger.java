@@ -2,23 +2,31 @@ package frc.lib;
 
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
-import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class FluentTrigger {
 
     public static class Builder {
 
-        private final Map<TriggerState, Command> stateCommandMap = new HashMap<>();
+        private final List<TriggerState> states = new ArrayList<>();
         private Command defaultCommand;
+        private Group group;
 
         public Builder() {}
 
         public FluentTrigger build() {
-            return new FluentTrigger(stateCommandMap, defaultCommand);
+            return new FluentTrigger(states, defaultCommand, group != null ? group : new Group());
+        }
+
+        /** polls and switches together with every other FluentTrigger in the group */
+        public Builder group(Group group) {
+            this.group = group;
+            return this;
         }
 
         public Builder defaultCommand(Command defaultCommand) {
@@ -30,8 +38,7 @@ public class FluentTrigger {
         }
 
         public Builder bind(int priority, Trigger trigger, Command command) {
-            TriggerState state = new TriggerState(trigger, priority);
-            stateCommandMap.put(state, command);
+            states.add(new TriggerState(trigger, priority, command));
             return this;
         }
 
@@ -44,78 +51,212 @@ public class FluentTrigger {
 
         private final Trigger trigger;
         private final int priority;
+        private final Command command;
 
-        public TriggerState(Trigger trigger, int priority) {
+        public TriggerState(Trigger trigger, int priority, Command command) {
             this.trigger = trigger;
             this.priority = priority;
+            this.command = command;
         }
     }
 
-    // the most recently appended state is prioritized first
-    private final ArrayList<TriggerState> stateList = new ArrayList<>();
-    private final Map<TriggerState, Command> stateCommandMap;
+    /**
+     * polls each distinct trigger once per cycle and fans its edges out to
+     * the bindings subscribed to it. all of the cycle's command changes are
+     * applied together, every outgoing command is cancelled before any
+     * incoming command is scheduled
+     */
+    public static class Group {
+
+        private record Subscriber(FluentTrigger member, int binding) {}
+
+        private final Map<Trigger, Integer> inputIndexes = new IdentityHashMap<>();
+        private final List<Trigger> inputs = new ArrayList<>();
+        private boolean[] values = new boolean[0];
+        // bindings of every member that use each input, so an edge only visits those
+        private final List<List<Subscriber>> subscribers = new ArrayList<>();
+
+        // members with edges this cycle
+        private final List<FluentTrigger> dirtyMembers = new ArrayList<>();
+
+        public Group() {
+            CommandScheduler.getInstance().getDefaultButtonLoop().bind(this::poll);
+        }
+
+        private void subscribe(Trigger trigger, FluentTrigger member, int binding) {
+            Integer index = inputIndexes.get(trigger);
+            if (index == null) {
+                index = inputs.size();
+                inputs.add(trigger);
+                inputIndexes.put(trigger, index);
+                values = Arrays.copyOf(values, inputs.size());
+                // like Trigger bindings, a button held when it is bound only
+                // counts once it is released and pressed again
+                values[index] = trigger.getAsBoolean();
+                subscribers.add(new ArrayList<>());
+            }
+            subscribers.get(index).add(new Subscriber(member, binding));
+        }
+
+        private void poll() {
+            for (int i = 0; i < inputs.size(); i++) {
+                boolean value = inputs.get(i).getAsBoolean();
+                if (value == values[i]) {
+                    continue;
+                }
+                values[i] = value;
+                List<Subscriber> inputSubscribers = subscribers.get(i);
+                for (int j = 0; j < inputSubscribers.size(); j++) {
+                    Subscriber subscriber = inputSubscribers.get(j);
+                    if (!subscriber.member.dirty) {
+                        dirtyMembers.add(subscriber.member);
+                    }
+                    subscriber.member.applyEdge(subscriber.binding, value);
+                }
+            }
+            if (dirtyMembers.isEmpty()) {
+                return;
+            }
+            for (int i = 0; i < dirtyMembers.size(); i++) {
+                dirtyMembers.get(i).cancelOutgoing();
+            }
+            for (int i = 0; i < dirtyMembers.size(); i++) {
+                dirtyMembers.get(i).scheduleIncoming();
+            }
+            dirtyMembers.clear();
+        }
+    }
+
+    private static final int kNone = -1;
+
+    // bindings are indexed densely in the order they were bound
+    private final Trigger[] triggers;
+    private final Command[] commands;
+    // priorities compressed to 0..levelCount-1, higher wins
+    private final int[] levels;
+
+    // active bindings form one linked list per level, the most recently
+    // activated binding at the head wins ties
+    private final boolean[] active;
+    private final int[] previous, next;
+    private final int[] levelHeads;
+    private final long[] activeLevelBits;
 
     private final Command defaultCommand;
     private Command activeCommand;
+    private Command pendingCommand;
+    private boolean dirty;
+
+    private FluentTrigger(List<TriggerState> states, Command defaultCommand, Group group) {
+        int bindingCount = states.size();
+        triggers = new Trigger[bindingCount];
+        commands = new Command[bindingCount];
+        levels = new int[bindingCount];
+        int[] distinctPriorities = new int[bindingCount];
+        for (int i = 0; i < bindingCount; i++) {
+            TriggerState state = states.get(i);
+            triggers[i] = state.trigger;
+            commands[i] = state.command;
+            distinctPriorities[i] = state.priority;
+        }
+        distinctPriorities = Arrays.stream(distinctPriorities).sorted().distinct().toArray();
+        for (int i = 0; i < bindingCount; i++) {
+            levels[i] = Arrays.binarySearch(distinctPriorities, states.get(i).priority);
+        }
+
+        active = new boolean[bindingCount];
+        previous = new int[bindingCount];
+        next = new int[bindingCount];
+        levelHeads = new int[distinctPriorities.length];
+        Arrays.fill(levelHeads, kNone);
+        activeLevelBits = new long[(distinctPriorities.length + 63) / 64];
 
-    private FluentTrigger(Map<TriggerState, Command> stateCommandMap, Command defaultCommand) {
-        this.stateCommandMap = stateCommandMap;
         this.defaultCommand = defaultCommand;
 
         this.activeCommand = defaultCommand;
-        updateState();
-        stateCommandMap.forEach((state, command) -> {
-            state.trigger.onTrue(new InstantCommand(() -> addQueue(state)));
-            state.trigger.onFalse(new InstantCommand(() -> removeQueue(state)));
-        });
+        dirty = true;
+        cancelOutgoing();
+        scheduleIncoming();
+        // the group is polled in the same scheduler pass the buttons are, so
+        // the winner is initialized in the cycle the button changed
+        for (int i = 0; i < bindingCount; i++) {
+            group.subscribe(triggers[i], this, i);
+        }
     }
 
-    private void addQueue(TriggerState state) {
-        if (stateList.contains(state)) {
-            return;
+    private void applyEdge(int binding, boolean value) {
+        if (value) {
+            addQueue(binding);
+        } else {
+            removeQueue(binding);
         }
-        stateList.add(state);
-        updateState();
+        dirty = true;
     }
 
-    private void removeQueue(TriggerState state) {
-        if (!stateList.contains(state)) {
+    private void addQueue(int binding) {
+        if (active[binding]) {
             return;
         }
-        stateList.remove(state);
-        updateState();
+        int level = levels[binding];
+        int head = levelHeads[level];
+        active[binding] = true;
+        previous[binding] = kNone;
+        next[binding] = head;
+        if (head != kNone) {
+            previous[head] = binding;
+        }
+        levelHeads[level] = binding;
+        activeLevelBits[level >>> 6] |= 1L << level;
     }
 
-    private void updateState() {
-        if (stateList.size() == 0) {
-            if (activeCommand != null && activeCommand.isScheduled()) {
-                CommandScheduler.getInstance().cancel(activeCommand);
-            }
-            if (defaultCommand != null && !defaultCommand.isScheduled()) {
-                CommandScheduler.getInstance().schedule(defaultCommand);
-                activeCommand = defaultCommand;
-            }
+    private void removeQueue(int binding) {
+        if (!active[binding]) {
             return;
         }
+        int level = levels[binding];
+        active[binding] = false;
+        if (previous[binding] != kNone) {
+            next[previous[binding]] = next[binding];
+        } else {
+            levelHeads[level] = next[binding];
+        }
+        if (next[binding] != kNone) {
+            previous[next[binding]] = previous[binding];
+        }
+        if (levelHeads[level] == kNone) {
+            activeLevelBits[level >>> 6] &= ~(1L << level);
+        }
+    }
 
-        TriggerState nextState = stateList.get(stateList.size() - 1);
-        for (int i = stateList.size() - 2; i >= 0; i--) {
-            TriggerState nextStateCandidate = stateList.get(i);
-            if (nextStateCandidate.priority <= nextState.priority) {
-                continue;
+    /** @return the active binding with the highest priority, or kNone */
+    private int winner() {
+        for (int word = activeLevelBits.length - 1; word >= 0; word--) {
+            long bits = activeLevelBits[word];
+            if (bits != 0) {
+                return levelHeads[(word << 6) + 63 - Long.numberOfLeadingZeros(bits)];
             }
-            nextState = nextStateCandidate;
         }
+        return kNone;
+    }
 
-        Command oldActiveCommand = activeCommand;
-        activeCommand = stateCommandMap.get(nextState);
-
-        boolean activeCommandChanged = (activeCommand != oldActiveCommand);
-        if (activeCommandChanged && oldActiveCommand != null) {
-            CommandScheduler.getInstance().cancel(oldActiveCommand);
+    private void cancelOutgoing() {
+        if (!dirty) {
+            return;
+        }
+        int nextState = winner();
+        pendingCommand = nextState == kNone ? defaultCommand : commands[nextState];
+        if (activeCommand != pendingCommand && activeCommand != null && activeCommand.isScheduled()) {
+            CommandScheduler.getInstance().cancel(activeCommand);
         }
+    }
 
-        if (!activeCommand.isScheduled()) {
+    private void scheduleIncoming() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        activeCommand = pendingCommand;
+        if (activeCommand != null && !activeCommand.isScheduled()) {
             CommandScheduler.getInstance().schedule(activeCommand);
         }
     }
@@ -5,13 +5,14 @@ import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
-import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.button.CommandGenericHID;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * rudimentary library for rumble feedback on controllers and HIDs
@@ -22,11 +23,35 @@ public class HIDRumble {
         Units.millisecondsToSeconds(50);
     private static final int kDefaultRequestPriority = 0;
     private static final boolean kRumblePersistWhileDisabled = false;
+    // unchanged outputs are rewritten this often in case the driver station
+    // missed one, positive infinity disables the refresh
+    private static final double kRumbleRefreshPeriod = 1;
 
-    private static boolean rumbleEnabled = true;
+    // power of two, submissions from other threads past this are dropped
+    private static final int kSubmissionQueueCapacity = 64;
+
+    private static volatile boolean rumbleEnabled = true;
+    // volatile so other threads never see a torn value when stamping requests
+    private static volatile double cycleTime = Double.NaN;
+    private static long cycleCount;
+    // the last cycle the managers were updated in
+    private static long updatedCycle;
+
+    // the thread that runs the scheduler, captured when the robot code first
+    // uses this class. everything else has to submit through the queue
+    private static final Thread mainThread = Thread.currentThread();
+    private static final SubmissionQueue submissionQueue = new SubmissionQueue(
+        kSubmissionQueueCapacity
+    );
+
+    private static final HashMap<String, RumblePattern> patterns =
+        new HashMap<>();
 
     private static final HashMap<GenericHID, RumbleManager> rumbleManagerMap =
         new HashMap<>();
+    // iterated every cycle, the map is only used for lookups
+    private static final ArrayList<RumbleManager> rumbleManagers =
+        new ArrayList<>();
 
     @SuppressWarnings("unused")
     private static final HIDRumble instance = new HIDRumble();
@@ -35,24 +60,33 @@ public class HIDRumble {
         new SubsystemBase() {
             @Override
             public void periodic() {
-                // update all rumble managers
-                for (Map.Entry<
-                    GenericHID,
-                    RumbleManager
-                > rumbleManagerEntry : rumbleManagerMap.entrySet()) {
-                    RumbleManager rumbleManager = rumbleManagerEntry.getValue();
-                    rumbleManager.update();
-                }
+                update();
             }
         };
     }
 
+    /** runs one cycle, called by the scheduler through the subsystem */
+    static void update() {
+        cycleTime = Clock.getTime();
+        cycleCount++;
+        submissionQueue.drain();
+        // update all rumble managers
+        for (int i = 0; i < rumbleManagers.size(); i++) {
+            RumbleManager rumbleManager = rumbleManagers.get(i);
+            if (!rumbleManager.isIdle()) {
+                rumbleManager.update();
+            }
+        }
+        updatedCycle = cycleCount;
+    }
+
+    /** safe to call from any thread */
     public static void rumble(GenericHID hid, RumbleRequest rumbleRequest) {
-        RumbleManager existingRumbleManager = rumbleManagerMap.get(hid);
-        RumbleManager rumbleManager = (existingRumbleManager != null)
-            ? existingRumbleManager
-            : new RumbleManager(hid);
-        rumbleManager.request(rumbleRequest);
+        if (!isMainThread()) {
+            submissionQueue.offer(hid, null, rumbleRequest, null, false);
+            return;
+        }
+        getManager(hid).request(rumbleRequest);
     }
 
     public static void rumble(
@@ -62,27 +96,245 @@ public class HIDRumble {
         rumble(commandHid.getHID(), rumbleRequest);
     }
 
+    /**
+     * @return the named channel on the HID, created the first time it is
+     *     asked for. a channel holds at most one request, so rumbling it every
+     *     cycle updates that request in place instead of piling up new ones.
+     *     channels have to be created on the main thread, but can be used
+     *     from any thread
+     * @throws IllegalStateException if called from another thread
+     */
+    public static RumbleHandle channel(GenericHID hid, String name) {
+        if (!isMainThread()) {
+            throw new IllegalStateException(
+                "Rumble channels have to be created on the main thread"
+            );
+        }
+        RumbleManager rumbleManager = getManager(hid);
+        return rumbleManager.channels.computeIfAbsent(name, key ->
+            new RumbleHandle(rumbleManager)
+        );
+    }
+
+    public static RumbleHandle channel(
+        CommandGenericHID commandHid,
+        String name
+    ) {
+        return channel(commandHid.getHID(), name);
+    }
+
+    /** names a pattern so command code can play it by name */
+    public static void definePattern(String name, RumblePattern pattern) {
+        patterns.put(name, pattern);
+    }
+
+    public static RumblePattern getPattern(String name) {
+        RumblePattern pattern = patterns.get(name);
+        if (pattern == null) {
+            throw new IllegalArgumentException(
+                "Rumble pattern does not exist: " + name
+            );
+        }
+        return pattern;
+    }
+
     public static void enable(boolean enabled) {
         rumbleEnabled = enabled;
     }
 
+    private static RumbleManager getManager(GenericHID hid) {
+        RumbleManager existingRumbleManager = rumbleManagerMap.get(hid);
+        return (existingRumbleManager != null)
+            ? existingRumbleManager
+            : new RumbleManager(hid);
+    }
+
+    /** @return the number of off thread submissions dropped on a full queue */
+    public static long getDroppedSubmissions() {
+        return submissionQueue.dropped.get();
+    }
+
+    private static boolean isMainThread() {
+        return Thread.currentThread() == mainThread;
+    }
+
+    /** @return the time of the current cycle, read once per cycle */
+    private static double getCycleTime() {
+        return Double.isNaN(cycleTime) ? Clock.getTime() : cycleTime;
+    }
+
+    /** a request slot, reused for as long as its manager exists */
+    private static final class Slot {
+
+        private RumbleType rumbleType;
+        private double strength, start, duration;
+        private int priority;
+        private boolean active;
+
+        // played instead of the constant strength when set
+        private RumblePattern pattern;
+        private long startCycle;
+
+        // position in the deadline heap
+        private int heapIndex = -1;
+        // links in the priority bucket, the most recent request at the head
+        private Bucket bucket;
+        private Slot previous, next;
+
+        // channel slots are owned by their handle, the rest are pooled
+        private final boolean pooled;
+        private Slot nextFree;
+
+        private Slot(boolean pooled) {
+            this.pooled = pooled;
+        }
+
+        private void set(
+            RumbleType rumbleType,
+            double strength,
+            double start,
+            double duration,
+            int priority
+        ) {
+            this.rumbleType = rumbleType;
+            this.strength = strength;
+            this.start = start;
+            this.duration = duration;
+            this.priority = priority;
+            this.pattern = null;
+        }
+
+        private void setPattern(
+            RumblePattern pattern,
+            double start,
+            int priority
+        ) {
+            this.pattern = pattern;
+            this.start = start;
+            this.duration = pattern.duration;
+            this.priority = priority;
+            // the next update plays the first sample, which is still this
+            // cycle's when it is started from the submission queue
+            this.startCycle = updatedCycle == cycleCount
+                ? cycleCount + 1
+                : cycleCount;
+        }
+
+        private double getDeadline() {
+            return start + duration;
+        }
+
+        private boolean isExpired(double timeSeconds) {
+            return timeSeconds - start > duration;
+        }
+    }
+
+    /** the active requests of one priority */
+    private static final class Bucket {
+
+        private final int priority;
+        private Slot head;
+
+        private Bucket(int priority) {
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * active requests are kept in a min-heap by deadline, so each update only
+     * touches the requests that expired, and in per-priority buckets ordered
+     * by recency, so the winner is the head of the highest non-empty bucket
+     */
     private static class RumbleManager {
 
-        private final ArrayList<RumbleRequest> rumbleRequestList =
-            new ArrayList<>();
-        private int highestPriorityRequestIndex = 0;
+        private Slot[] heap = new Slot[8];
+        private int heapSize;
+        private Slot freeSlots;
+
+        // sorted by priority, with a bit set for every non-empty bucket
+        private Bucket[] buckets = new Bucket[0];
+        private long[] nonEmptyBuckets = new long[0];
+
+        private final HashMap<String, RumbleHandle> channels = new HashMap<>();
 
         private final GenericHID hid;
+        // last written outputs, NaN until the first write
+        private double lastLeftStrength = Double.NaN;
+        private double lastRightStrength = Double.NaN;
+        private double lastWriteTime;
 
         public RumbleManager(GenericHID hid) {
             this.hid = hid;
             HIDRumble.rumbleManagerMap.put(hid, this);
+            HIDRumble.rumbleManagers.add(this);
+        }
+
+        /** @return true if there is nothing to play and nothing to clear */
+        private boolean isIdle() {
+            return (
+                heapSize == 0 &&
+                lastLeftStrength == 0 &&
+                lastRightStrength == 0
+            );
         }
 
         public void request(RumbleRequest rumbleRequest) {
-            rumbleRequestList.add(rumbleRequest);
-            if (rumbleRequest.priority > highestPriorityRequestIndex) {
-                highestPriorityRequestIndex = rumbleRequest.priority;
+            Slot slot = freeSlots;
+            if (slot != null) {
+                freeSlots = slot.nextFree;
+                slot.nextFree = null;
+            } else {
+                slot = new Slot(true);
+            }
+            slot.set(
+                rumbleRequest.rumbleType,
+                rumbleRequest.strength,
+                rumbleRequest.start,
+                rumbleRequest.duration,
+                rumbleRequest.priority
+            );
+            activate(slot);
+        }
+
+        /** adds the slot, or moves it if it is already active */
+        private void activate(Slot slot) {
+            if (slot.active) {
+                unlinkBucket(slot);
+                linkBucket(slot);
+                siftUp(slot.heapIndex);
+                siftDown(slot.heapIndex);
+                return;
+            }
+            slot.active = true;
+            linkBucket(slot);
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, heapSize * 2);
+            }
+            heap[heapSize] = slot;
+            slot.heapIndex = heapSize;
+            heapSize++;
+            siftUp(slot.heapIndex);
+        }
+
+        private void deactivate(Slot slot) {
+            if (!slot.active) {
+                return;
+            }
+            slot.active = false;
+            unlinkBucket(slot);
+            int index = slot.heapIndex;
+            heapSize--;
+            if (index != heapSize) {
+                heap[index] = heap[heapSize];
+                heap[index].heapIndex = index;
+                siftUp(index);
+                siftDown(heap[index].heapIndex);
+            }
+            heap[heapSize] = null;
+            slot.heapIndex = -1;
+            if (slot.pooled) {
+                slot.nextFree = freeSlots;
+                freeSlots = slot;
             }
         }
 
@@ -90,72 +342,380 @@ public class HIDRumble {
             boolean robotEnabled = DriverStation.isEnabled();
 
             if (!robotEnabled && !kRumblePersistWhileDisabled) {
-                rumbleRequestList.clear();
-                highestPriorityRequestIndex = 0;
-            } else {
-                Iterator<RumbleRequest> removeIterator =
-                    rumbleRequestList.iterator();
-                boolean removedHighestPriorityRequest = false;
-                while (removeIterator.hasNext()) {
-                    RumbleRequest rumbleRequest = removeIterator.next();
-                    if (rumbleRequest.isExpired()) {
-                        removeIterator.remove();
-                        if (
-                            rumbleRequest.priority ==
-                            highestPriorityRequestIndex
-                        ) {
-                            removedHighestPriorityRequest = true;
-                        }
-                    }
+                while (heapSize > 0) {
+                    deactivate(heap[heapSize - 1]);
                 }
-                if (removedHighestPriorityRequest) {
-                    updateHighestPriorityRequestIndex();
+            } else {
+                while (heapSize > 0 && heap[0].isExpired(cycleTime)) {
+                    deactivate(heap[0]);
                 }
             }
 
-            if (rumbleEnabled && rumbleRequestList.size() > 0) {
-                setRumbleFromRequest(getLatestHighestPriorityRequest());
+            if (rumbleEnabled && heapSize > 0) {
+                setRumbleFromSlot(getLatestHighestPrioritySlot());
             } else {
-                hid.setRumble(RumbleType.kBothRumble, 0);
+                setRumble(0, 0);
+            }
+        }
+
+        /** only writes to the HID when an output changed or is due a refresh */
+        private void setRumble(double leftStrength, double rightStrength) {
+            boolean refresh = cycleTime - lastWriteTime >= kRumbleRefreshPeriod;
+            boolean leftChanged = leftStrength != lastLeftStrength;
+            boolean rightChanged = rightStrength != lastRightStrength;
+            if (leftChanged || refresh) {
+                hid.setRumble(RumbleType.kLeftRumble, leftStrength);
+            }
+            if (rightChanged || refresh) {
+                hid.setRumble(RumbleType.kRightRumble, rightStrength);
+            }
+            if (leftChanged || rightChanged || refresh) {
+                lastLeftStrength = leftStrength;
+                lastRightStrength = rightStrength;
+                lastWriteTime = cycleTime;
             }
         }
 
-        private void setRumbleFromRequest(RumbleRequest rumbleRequest) {
+        private void setRumbleFromSlot(Slot slot) {
+            if (slot.pattern != null) {
+                RumblePattern pattern = slot.pattern;
+                long index = cycleCount - slot.startCycle;
+                int sample = pattern.looping
+                    ? (int) (index % pattern.left.length)
+                    : (int) Math.min(index, pattern.left.length - 1);
+                setRumble(pattern.left[sample], pattern.right[sample]);
+                return;
+            }
             double leftStrength = 0,
                 rightStrength = 0;
-            switch (rumbleRequest.rumbleType) {
+            switch (slot.rumbleType) {
                 case kLeftRumble:
-                    leftStrength = rumbleRequest.strength;
+                    leftStrength = slot.strength;
                     break;
                 case kRightRumble:
-                    rightStrength = rumbleRequest.strength;
+                    rightStrength = slot.strength;
                     break;
                 case kBothRumble:
-                    leftStrength = rumbleRequest.strength;
-                    rightStrength = rumbleRequest.strength;
+                    leftStrength = slot.strength;
+                    rightStrength = slot.strength;
                     break;
             }
-            hid.setRumble(RumbleType.kLeftRumble, leftStrength);
-            hid.setRumble(RumbleType.kRightRumble, rightStrength);
+            setRumble(leftStrength, rightStrength);
+        }
+
+        private Slot getLatestHighestPrioritySlot() {
+            for (int word = nonEmptyBuckets.length - 1; word >= 0; word--) {
+                long bits = nonEmptyBuckets[word];
+                if (bits != 0) {
+                    int index =
+                        (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+                    return buckets[index].head;
+                }
+            }
+            return null;
+        }
+
+        private void linkBucket(Slot slot) {
+            int index = getBucketIndex(slot.priority);
+            Bucket bucket = buckets[index];
+            slot.bucket = bucket;
+            slot.previous = null;
+            slot.next = bucket.head;
+            if (bucket.head != null) {
+                bucket.head.previous = slot;
+            }
+            bucket.head = slot;
+            nonEmptyBuckets[index >>> 6] |= 1L << index;
+        }
+
+        private void unlinkBucket(Slot slot) {
+            Bucket bucket = slot.bucket;
+            if (slot.previous != null) {
+                slot.previous.next = slot.next;
+            } else {
+                bucket.head = slot.next;
+            }
+            if (slot.next != null) {
+                slot.next.previous = slot.previous;
+            }
+            slot.previous = null;
+            slot.next = null;
+            slot.bucket = null;
+            if (bucket.head == null) {
+                int index = getBucketIndex(bucket.priority);
+                nonEmptyBuckets[index >>> 6] &= ~(1L << index);
+            }
         }
 
-        private void updateHighestPriorityRequestIndex() {
-            highestPriorityRequestIndex = 0;
-            for (RumbleRequest rumbleRequest : rumbleRequestList) {
-                if (rumbleRequest.priority > highestPriorityRequestIndex) {
-                    highestPriorityRequestIndex = rumbleRequest.priority;
+        /** @return the bucket for the priority, adding it the first time */
+        private int getBucketIndex(int priority) {
+            int low = 0, high = buckets.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int middlePriority = buckets[middle].priority;
+                if (middlePriority < priority) {
+                    low = middle + 1;
+                } else if (middlePriority > priority) {
+                    high = middle - 1;
+                } else {
+                    return middle;
                 }
             }
+            // only happens once per distinct priority
+            Bucket[] newBuckets = new Bucket[buckets.length + 1];
+            System.arraycopy(buckets, 0, newBuckets, 0, low);
+            newBuckets[low] = new Bucket(priority);
+            System.arraycopy(
+                buckets,
+                low,
+                newBuckets,
+                low + 1,
+                buckets.length - low
+            );
+            buckets = newBuckets;
+            nonEmptyBuckets = new long[(buckets.length + 63) / 64];
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i].head != null) {
+                    nonEmptyBuckets[i >>> 6] |= 1L << i;
+                }
+            }
+            return low;
         }
 
-        private RumbleRequest getLatestHighestPriorityRequest() {
-            for (int i = rumbleRequestList.size() - 1; i >= 0; i--) {
-                RumbleRequest rumbleRequest = rumbleRequestList.get(i);
-                if (rumbleRequest.priority == highestPriorityRequestIndex) {
-                    return rumbleRequest;
+        private void siftUp(int index) {
+            Slot slot = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent].getDeadline() <= slot.getDeadline()) {
+                    break;
                 }
+                heap[index] = heap[parent];
+                heap[index].heapIndex = index;
+                index = parent;
+            }
+            heap[index] = slot;
+            slot.heapIndex = index;
+        }
+
+        private void siftDown(int index) {
+            Slot slot = heap[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (
+                    child + 1 < heapSize &&
+                    heap[child + 1].getDeadline() < heap[child].getDeadline()
+                ) {
+                    child++;
+                }
+                if (slot.getDeadline() <= heap[child].getDeadline()) {
+                    break;
+                }
+                heap[index] = heap[child];
+                heap[index].heapIndex = index;
+                index = child;
+            }
+            heap[index] = slot;
+            slot.heapIndex = index;
+        }
+    }
+
+    /**
+     * a reusable request on one channel of a HID. updating it never allocates
+     * and never adds a second request, see {@link HIDRumble#channel}
+     */
+    public static final class RumbleHandle {
+
+        private final RumbleManager rumbleManager;
+        private final Slot slot = new Slot(false);
+
+        private RumbleHandle(RumbleManager rumbleManager) {
+            this.rumbleManager = rumbleManager;
+        }
+
+        /** replaces the channel's request, restarting its duration */
+        public void rumble(
+            RumbleType rumbleType,
+            double strength,
+            double duration,
+            int priority
+        ) {
+            if (!isMainThread()) {
+                submissionQueue.offer(
+                    null,
+                    this,
+                    new RumbleRequest(rumbleType, strength, duration, priority),
+                    null,
+                    false
+                );
+                return;
+            }
+            slot.set(
+                rumbleType,
+                MathUtil.clamp(strength, 0, 1),
+                getCycleTime(),
+                Math.max(0, duration),
+                priority
+            );
+            rumbleManager.activate(slot);
+        }
+
+        public void rumble(
+            RumbleType rumbleType,
+            double strength,
+            double duration
+        ) {
+            rumble(rumbleType, strength, duration, kDefaultRequestPriority);
+        }
+
+        public void rumble(RumbleType rumbleType, double strength) {
+            rumble(
+                rumbleType,
+                strength,
+                kDefaultRequestDuration,
+                kDefaultRequestPriority
+            );
+        }
+
+        /** plays the pattern from its first sample */
+        public void play(RumblePattern pattern, int priority) {
+            if (!isMainThread()) {
+                submissionQueue.offer(
+                    null,
+                    this,
+                    new RumbleRequest(RumbleType.kBothRumble, 0, priority),
+                    pattern,
+                    false
+                );
+                return;
+            }
+            slot.setPattern(pattern, getCycleTime(), priority);
+            rumbleManager.activate(slot);
+        }
+
+        public void play(RumblePattern pattern) {
+            play(pattern, kDefaultRequestPriority);
+        }
+
+        public void play(String patternName) {
+            play(getPattern(patternName), kDefaultRequestPriority);
+        }
+
+        public void stop() {
+            if (!isMainThread()) {
+                submissionQueue.offer(null, this, null, null, true);
+                return;
+            }
+            rumbleManager.deactivate(slot);
+        }
+
+        public boolean isActive() {
+            return slot.active;
+        }
+    }
+
+    /**
+     * bounded multi producer, single consumer queue for submissions from
+     * other threads. producers claim a cell with one compare and set and
+     * never block, the main thread drains it at the start of every cycle
+     */
+    private static final class SubmissionQueue {
+
+        private final int mask;
+        // a cell is free for position p when its sequence is p, and holds a
+        // submission for position p when its sequence is p + 1
+        private final AtomicLongArray sequences;
+        private final GenericHID[] hids;
+        private final RumbleHandle[] handles;
+        private final RumbleRequest[] requests;
+        private final RumblePattern[] rumblePatterns;
+        private final boolean[] stops;
+
+        private final AtomicLong tail = new AtomicLong();
+        private long head;
+        private final AtomicLong dropped = new AtomicLong();
+
+        private SubmissionQueue(int capacity) {
+            mask = capacity - 1;
+            sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+            hids = new GenericHID[capacity];
+            handles = new RumbleHandle[capacity];
+            requests = new RumbleRequest[capacity];
+            rumblePatterns = new RumblePattern[capacity];
+            stops = new boolean[capacity];
+        }
+
+        private void offer(
+            GenericHID hid,
+            RumbleHandle handle,
+            RumbleRequest request,
+            RumblePattern pattern,
+            boolean stop
+        ) {
+            long position = tail.get();
+            while (true) {
+                int cell = (int) (position & mask);
+                long difference = sequences.get(cell) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        hids[cell] = hid;
+                        handles[cell] = handle;
+                        requests[cell] = request;
+                        rumblePatterns[cell] = pattern;
+                        stops[cell] = stop;
+                        // publishes the fields above to the consumer
+                        sequences.set(cell, position + 1);
+                        return;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    // full
+                    dropped.incrementAndGet();
+                    return;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                int cell = (int) (head & mask);
+                if (sequences.get(cell) != head + 1) {
+                    return;
+                }
+                apply(cell);
+                hids[cell] = null;
+                handles[cell] = null;
+                requests[cell] = null;
+                rumblePatterns[cell] = null;
+                sequences.set(cell, head + mask + 1);
+                head++;
+            }
+        }
+
+        private void apply(int cell) {
+            RumbleHandle handle = handles[cell];
+            RumbleRequest request = requests[cell];
+            if (handle == null) {
+                getManager(hids[cell]).request(request);
+            } else if (stops[cell]) {
+                handle.stop();
+            } else if (rumblePatterns[cell] != null) {
+                handle.play(rumblePatterns[cell], request.priority);
+            } else {
+                handle.rumble(
+                    request.rumbleType,
+                    request.strength,
+                    request.duration,
+                    request.priority
+                );
             }
-            return null;
         }
     }
 
@@ -171,7 +731,7 @@ public class HIDRumble {
             double duration,
             int priority
         ) {
-            this.start = Timer.getFPGATimestamp();
+            this.start = getCycleTime();
             this.rumbleType = rumbleType;
             this.strength = MathUtil.clamp(strength, 0, 1);
             this.duration = Math.max(0, duration);
@@ -222,7 +782,166 @@ public class HIDRumble {
         }
 
         public boolean isExpired() {
-            return Timer.getFPGATimestamp() - start > duration;
+            return Clock.getTime() - start > duration;
+        }
+    }
+
+    /**
+     * a rumble waveform sampled once per cycle when it is built, so playing it
+     * back is a table lookup. patterns can be concatenated, repeated, looped,
+     * and can drive the left and right motors differently
+     */
+    public static final class RumblePattern {
+
+        public static final double kSamplePeriod = 0.02;
+
+        private final double[] left, right;
+        private final boolean looping;
+        private final double duration;
+
+        private RumblePattern(double[] left, double[] right, boolean looping) {
+            this.left = left;
+            this.right = right;
+            this.looping = looping;
+            this.duration = looping
+                ? Double.POSITIVE_INFINITY
+                : left.length * kSamplePeriod;
+        }
+
+        /** samples the curves, which take seconds since the start */
+        public static RumblePattern of(
+            DoubleUnaryOperator leftCurve,
+            DoubleUnaryOperator rightCurve,
+            double duration
+        ) {
+            int sampleCount = Math.max(
+                1,
+                (int) Math.ceil(duration / kSamplePeriod - 1e-9)
+            );
+            double[] left = new double[sampleCount];
+            double[] right = new double[sampleCount];
+            for (int i = 0; i < sampleCount; i++) {
+                double time = i * kSamplePeriod;
+                left[i] = MathUtil.clamp(leftCurve.applyAsDouble(time), 0, 1);
+                right[i] = MathUtil.clamp(
+                    rightCurve.applyAsDouble(time),
+                    0,
+                    1
+                );
+            }
+            return new RumblePattern(left, right, false);
+        }
+
+        public static RumblePattern of(
+            RumbleType rumbleType,
+            DoubleUnaryOperator curve,
+            double duration
+        ) {
+            DoubleUnaryOperator off = time -> 0;
+            return of(
+                rumbleType == RumbleType.kRightRumble ? off : curve,
+                rumbleType == RumbleType.kLeftRumble ? off : curve,
+                duration
+            );
+        }
+
+        public static RumblePattern constant(
+            RumbleType rumbleType,
+            double strength,
+            double duration
+        ) {
+            return of(rumbleType, time -> strength, duration);
+        }
+
+        public static RumblePattern pulses(
+            RumbleType rumbleType,
+            double strength,
+            double onSeconds,
+            double offSeconds,
+            int count
+        ) {
+            double period = onSeconds + offSeconds;
+            return of(
+                rumbleType,
+                time -> time % period < onSeconds ? strength : 0,
+                period * count
+            );
+        }
+
+        public static RumblePattern ramp(
+            RumbleType rumbleType,
+            double fromStrength,
+            double toStrength,
+            double duration
+        ) {
+            return of(
+                rumbleType,
+                time -> MathUtil.interpolate(
+                    fromStrength,
+                    toStrength,
+                    time / duration
+                ),
+                duration
+            );
+        }
+
+        /** attack to the peak, decay to the sustain level, hold, release */
+        public static RumblePattern adsr(
+            RumbleType rumbleType,
+            double peakStrength,
+            double sustainStrength,
+            double attack,
+            double decay,
+            double sustain,
+            double release
+        ) {
+            return ramp(rumbleType, 0, peakStrength, attack)
+                .then(ramp(rumbleType, peakStrength, sustainStrength, decay))
+                .then(constant(rumbleType, sustainStrength, sustain))
+                .then(ramp(rumbleType, sustainStrength, 0, release));
+        }
+
+        public RumblePattern then(RumblePattern next) {
+            double[] newLeft = Arrays.copyOf(
+                left,
+                left.length + next.left.length
+            );
+            double[] newRight = Arrays.copyOf(
+                right,
+                right.length + next.right.length
+            );
+            System.arraycopy(
+                next.left,
+                0,
+                newLeft,
+                left.length,
+                next.left.length
+            );
+            System.arraycopy(
+                next.right,
+                0,
+                newRight,
+                right.length,
+                next.right.length
+            );
+            return new RumblePattern(newLeft, newRight, false);
+        }
+
+        public RumblePattern repeat(int count) {
+            RumblePattern pattern = this;
+            for (int i = 1; i < count; i++) {
+                pattern = pattern.then(this);
+            }
+            return pattern;
+        }
+
+        /** @return a copy that plays until its channel is stopped */
+        public RumblePattern looping() {
+            return new RumblePattern(left, right, true);
+        }
+
+        public double getDuration() {
+            return duration;
         }
     }
 }
@@ -1,152 +1,1338 @@
 package frc.lib;
 
-import edu.wpi.first.math.MathSharedStore;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Subsystem;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+/**
+ * fluent builder for scripted command routines. the blocks are compiled into
+ * an immutable {@link Program} that any number of {@link Executor}s can run at
+ * once. an Orchestrator is itself a command that runs its program on a single
+ * executor of its own
+ */
 public class Orchestrator extends Command {
 
-    private enum RunBlockStatus {
-        CONTINUE,
-        JUMP,
-        YIELD,
-        EXIT,
+    // opcodes of the compiled instruction table
+    private static final int OP_LABEL = 0;
+    private static final int OP_EXIT = 1;
+    private static final int OP_EXITIF = 2;
+    private static final int OP_JUMP = 3;
+    private static final int OP_JUMPIF = 4;
+    private static final int OP_RUN = 5;
+    private static final int OP_RUNIF = 6;
+    private static final int OP_REPEAT = 7;
+    private static final int OP_REPEATIF = 8;
+    private static final int OP_COMMAND = 9;
+    private static final int OP_COMMANDIF = 10;
+    private static final int OP_YIELD = 11;
+    private static final int OP_YIELD_TIMEOUT = 12;
+    private static final int OP_YIELD_CONDITION = 13;
+    private static final int OP_CANCEL_GROUP = 14;
+    private static final int OP_CANCEL_ALL = 15;
+    private static final int OP_CANCEL_UNTRACKED = 16;
+    private static final int OP_CANCEL_TRACKED = 17;
+    private static final int OP_PRINT = 18;
+    private static final int OP_PRINT_SUPPLIER = 19;
+    private static final int OP_YIELD_TRIGGER = 20;
+    private static final int OP_JOIN = 21;
+    private static final int OP_RACE = 22;
+
+    // jump target used when a branch has no label and falls through
+    private static final int kNoTarget = -1;
+
+    // group index of stacks started without a group
+    private static final int kUntrackedGroup = 0;
+
+    // default per cycle budget, high enough for any program that yields
+    private static final int kDefaultBlockBudget = 1000;
+    // consecutive cycles that run out of budget before reporting a runaway loop
+    private static final int kRunawayCycles = 50;
+    // number of recent jump targets kept to describe a runaway loop
+    private static final int kJumpTrailLength = 8;
+
+    // values returned by step() that are not instruction indices
+    private static final int kYield = -1;
+    private static final int kExit = -2;
+
+    /**
+     * a block as recorded by the fluent builder, lowered into the instruction
+     * table when the program is built
+     */
+    private record Block(
+        int opcode,
+        BooleanSupplier condition,
+        Object operand,
+        Object altOperand,
+        String group,
+        String altGroup,
+        String target,
+        String altTarget,
+        double timeoutSeconds
+    ) {
+        private static Block simple(int opcode) {
+            return operand(opcode, null);
+        }
+
+        private static Block condition(int opcode, BooleanSupplier condition) {
+            return new Block(
+                opcode,
+                condition,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                0
+            );
+        }
+
+        private static Block operand(int opcode, Object operand) {
+            return new Block(
+                opcode,
+                null,
+                operand,
+                null,
+                null,
+                null,
+                null,
+                null,
+                0
+            );
+        }
+
+        /** an unconditional jump when the condition is null */
+        private static Block jump(
+            BooleanSupplier condition,
+            String trueLabel,
+            String falseLabel
+        ) {
+            return new Block(
+                condition != null ? OP_JUMPIF : OP_JUMP,
+                condition,
+                null,
+                null,
+                null,
+                null,
+                trueLabel,
+                falseLabel,
+                0
+            );
+        }
+
+        /** a repeat or command block that starts a stack in the group */
+        private static Block stack(int opcode, String group, Object operand) {
+            return new Block(
+                opcode,
+                null,
+                operand,
+                null,
+                group,
+                null,
+                null,
+                null,
+                0
+            );
+        }
+
+        /** picks the true or false operand, and its group, by the condition */
+        private static Block branch(
+            int opcode,
+            BooleanSupplier condition,
+            String trueGroup,
+            Object trueOperand,
+            String falseGroup,
+            Object falseOperand
+        ) {
+            return new Block(
+                opcode,
+                condition,
+                trueOperand,
+                falseOperand,
+                trueGroup,
+                falseGroup,
+                null,
+                null,
+                0
+            );
+        }
+
+        /** a yield block, the condition is null for yields on time alone */
+        private static Block yield(
+            int opcode,
+            BooleanSupplier condition,
+            double timeoutSeconds
+        ) {
+            return new Block(
+                opcode,
+                condition,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                timeoutSeconds
+            );
+        }
+
+        /** a block that acts on a stack group */
+        private static Block group(
+            int opcode,
+            String group,
+            double timeoutSeconds
+        ) {
+            return new Block(
+                opcode,
+                null,
+                null,
+                null,
+                group,
+                null,
+                null,
+                null,
+                timeoutSeconds
+            );
+        }
     }
 
-    private record RunBlock(Supplier<RunBlockStatus> callback) {}
+    /**
+     * a compiled, immutable Orchestrator program. the blocks never change
+     * after it is built and the run state lives in its executors, apart from
+     * the atomic owner of its shared commands, so one program can back several
+     * executors. executors, like the scheduler, are only run from the main
+     * robot thread
+     *
+     * <p>each executor gets its own background stacks. a command block given a
+     * factory creates a Command for every executor, but one given a Command
+     * instance shares it, so a program with any shared command only runs on
+     * one executor at a time and other executors are refused until it ends
+     */
+    public static final class Program {
 
-    private record RunStack(Command command, boolean repeating) {}
+        private final int instructionCount;
+        private final int[] opcodes;
+        private final int[] targets;
+        private final int[] altTargets;
+        private final BooleanSupplier[] conditions;
+        private final Object[] operands;
+        private final Object[] altOperands;
+        private final int[] groups;
+        private final double[] timeouts;
+        private final String[] blockLabels;
 
-    private final ArrayList<RunBlock> blocks = new ArrayList<>();
+        // whether each block starts a background stack, the executors create
+        // the stack commands from the block operands
+        private final boolean[] startsStack;
+        private final boolean[] altStartsStack;
+        private final boolean sharesCommands;
+        // the executor running a program that shares commands, or null
+        private final AtomicReference<Executor> sharedOwner =
+            new AtomicReference<>();
+        private final int[] altGroups;
+        private final int groupCount;
+        private final int[] groupCapacities;
+        private final int stackCount;
 
-    private final ArrayList<RunStack> stacks = new ArrayList<>();
-    private final ArrayList<RunStack> untrackedStacks = new ArrayList<>();
-    private final Map<String, ArrayList<RunStack>> trackedStacks =
-        new HashMap<>();
+        private final Subsystem[] requirements;
+        private final Consumer<Boolean> exitCallback;
+        private final int blockBudget;
+        private final long timeBudgetNanos;
+        private final String profilerName;
 
-    private final Map<String, Integer> labels = new HashMap<>();
+        private Program(Orchestrator builder) {
+            // groups are numbered in order of appearance after the untracked
+            // group
+            Map<String, Integer> groupIndices = new HashMap<>();
 
-    private Consumer<Boolean> exitCallback;
+            instructionCount = builder.blocks.size();
+            opcodes = new int[instructionCount];
+            targets = new int[instructionCount];
+            altTargets = new int[instructionCount];
+            conditions = new BooleanSupplier[instructionCount];
+            operands = new Object[instructionCount];
+            altOperands = new Object[instructionCount];
+            groups = new int[instructionCount];
+            altGroups = new int[instructionCount];
+            timeouts = new double[instructionCount];
+            startsStack = new boolean[instructionCount];
+            altStartsStack = new boolean[instructionCount];
+            boolean shares = false;
 
-    private int runIndex;
-    private int lastRunIndex;
-    private boolean runFinished;
-    private double lastBlockInitializedSeconds;
+            for (int i = 0; i < instructionCount; i++) {
+                Block block = builder.blocks.get(i);
+                opcodes[i] = block.opcode;
+                targets[i] = resolveLabel(builder.labels, i, block.target);
+                altTargets[i] = resolveLabel(
+                    builder.labels,
+                    i,
+                    block.altTarget
+                );
+                conditions[i] = block.condition;
+                operands[i] = block.operand;
+                altOperands[i] = block.altOperand;
+                groups[i] = indexGroup(groupIndices, block.group);
+                altGroups[i] = indexGroup(groupIndices, block.altGroup);
+                timeouts[i] = block.timeoutSeconds;
+                startsStack[i] = isStackBlock(block.opcode, block.operand);
+                altStartsStack[i] = isStackBlock(
+                    block.opcode,
+                    block.altOperand
+                );
+                shares |=
+                    block.operand instanceof Command ||
+                    block.altOperand instanceof Command;
+            }
 
-    public Orchestrator() {}
+            // every block owns at most two stacks, so the registry never grows
+            groupCount = groupIndices.size() + 1;
+            groupCapacities = new int[groupCount];
+            int stacks = 0;
+            for (int i = 0; i < instructionCount; i++) {
+                if (startsStack[i]) {
+                    groupCapacities[groups[i]]++;
+                    stacks++;
+                }
+                if (altStartsStack[i]) {
+                    groupCapacities[altGroups[i]]++;
+                    stacks++;
+                }
+            }
+            stackCount = stacks;
+            sharesCommands = shares;
 
-    @Override
-    public void initialize() {
-        runIndex = 0;
-        lastRunIndex = 0;
-        runFinished = false;
-        lastBlockInitializedSeconds = getTime();
-        stacks.clear();
-        untrackedStacks.clear();
-        trackedStacks.clear();
+            blockLabels = labelBlocks();
+            checkReachability();
+
+            requirements = builder
+                .getRequirements()
+                .toArray(new Subsystem[0]);
+            exitCallback = builder.exitCallback;
+            blockBudget = builder.blockBudget;
+            timeBudgetNanos = builder.timeBudgetNanos;
+            profilerName = builder.profilerName;
+        }
+
+        /** @return a new executor that runs this program from the start */
+        public Executor executor() {
+            return new Executor(this);
+        }
+
+        public int getBlockCount() {
+            return instructionCount;
+        }
+
+        /** @return the closest label at or before the block */
+        public String getLabel(int index) {
+            return blockLabels[index];
+        }
+
+        public Set<Subsystem> getRequirements() {
+            return Set.of(requirements);
+        }
+
+        private static int resolveLabel(
+            Map<String, Integer> labels,
+            int index,
+            String label
+        ) {
+            if (label == null) {
+                return kNoTarget;
+            }
+            Integer destination = labels.get(label);
+            if (destination == null) {
+                throw new IllegalStateException(
+                    "Block " + index + " jumps to unknown label: " + label
+                );
+            }
+            return destination;
+        }
+
+        private static int indexGroup(
+            Map<String, Integer> groupIndices,
+            String group
+        ) {
+            if (group == null) {
+                return kUntrackedGroup;
+            }
+            Integer index = groupIndices.get(group);
+            if (index == null) {
+                index = groupIndices.size() + 1;
+                groupIndices.put(group, index);
+            }
+            return index;
+        }
+
+        private static boolean isStackBlock(int opcode, Object operand) {
+            return (
+                operand != null &&
+                (opcode == OP_REPEAT ||
+                    opcode == OP_REPEATIF ||
+                    opcode == OP_COMMAND ||
+                    opcode == OP_COMMANDIF)
+            );
+        }
+
+        /** @return the stack command of a block, created for one executor */
+        @SuppressWarnings("unchecked")
+        private static Command createStackCommand(int opcode, Object operand) {
+            if (opcode == OP_REPEAT || opcode == OP_REPEATIF) {
+                return new RepeatRunner((Runnable) operand);
+            }
+            if (operand instanceof Command) {
+                // the stack runs the command directly, it is never scheduled,
+                // so its requirements are left as they are
+                return (Command) operand;
+            }
+            Command command = ((Supplier<Command>) operand).get();
+            if (command == null) {
+                throw new IllegalStateException(
+                    "Orchestrator command factory returned null"
+                );
+            }
+            return command;
+        }
+
+        private void checkReachability() {
+            if (instructionCount == 0) {
+                return;
+            }
+            boolean[] reachable = new boolean[instructionCount];
+            int[] pending = new int[instructionCount];
+            int pendingCount = 0;
+            reachable[0] = true;
+            pending[pendingCount++] = 0;
+
+            while (pendingCount > 0) {
+                int index = pending[--pendingCount];
+                int successor = kNoTarget, altSuccessor = kNoTarget;
+                switch (opcodes[index]) {
+                    case OP_EXIT:
+                        break;
+                    case OP_JUMP:
+                        successor = targets[index];
+                        break;
+                    case OP_JUMPIF:
+                        successor = targets[index] != kNoTarget
+                            ? targets[index]
+                            : index + 1;
+                        altSuccessor = altTargets[index] != kNoTarget
+                            ? altTargets[index]
+                            : index + 1;
+                        break;
+                    default:
+                        successor = index + 1;
+                        break;
+                }
+                for (int next : new int[] { successor, altSuccessor }) {
+                    if (
+                        next == kNoTarget ||
+                        next >= instructionCount ||
+                        reachable[next]
+                    ) {
+                        continue;
+                    }
+                    reachable[next] = true;
+                    pending[pendingCount++] = next;
+                }
+            }
+
+            for (int i = 0; i < instructionCount; i++) {
+                if (!reachable[i]) {
+                    throw new IllegalStateException(
+                        "Block " + i + " is unreachable" + describeBlock(i)
+                    );
+                }
+            }
+        }
+
+        private String[] labelBlocks() {
+            String[] labels = new String[instructionCount];
+            String label = "";
+            for (int i = 0; i < instructionCount; i++) {
+                if (opcodes[i] == OP_LABEL) {
+                    label = (String) operands[i];
+                }
+                labels[i] = label;
+            }
+            return labels;
+        }
+
+        private String describeBlock(int index) {
+            // name the closest label at or before the block to help find it
+            for (int i = index; i >= 0; i--) {
+                if (opcodes[i] == OP_LABEL) {
+                    return " (after label: " + operands[i] + ")";
+                }
+            }
+            return "";
+        }
     }
 
-    @Override
-    public void execute() {
-        boolean stacksRunFinished = true;
-        for (RunStack stack : stacks) {
-            Command command = stack.command;
-            if (stack.repeating) {
-                if (command.isFinished()) {
-                    command.initialize();
+    /**
+     * runs a {@link Program}. an executor only holds its own program counter
+     * and stack state, so it is cheap to create one per trigger binding
+     */
+    public static final class Executor extends Command {
+
+        private final Program program;
+
+        private final RunStack[] runStacks;
+        private final RunStack[] altRunStacks;
+        private final StackRegistry stacks;
+        private final OrchestratorProfiler profiler;
+
+        // wakeups for yield blocks that park instead of polling
+        private final TimerWheel.Timeout timeout = new TimerWheel.Timeout();
+        private int armedIndex = -1;
+        // this executor's wakes for the trigger yield blocks
+        private final TriggerWake[] triggerWakes;
+        private TriggerWake armedWake;
+        private boolean triggerFired;
+        private boolean parked;
+        // finished count of the group a race block is waiting on when it began
+        private int raceFinishedCount;
+
+        private int runIndex;
+        private int lastRunIndex;
+        private boolean runFinished;
+        // set when another executor holds the program's shared commands
+        private boolean refused;
+        private double lastBlockInitializedSeconds;
+
+        private int cycleBlockCount;
+        private long cycleStartNanos;
+        private int exhaustedCycles;
+        private boolean runawayReported;
+        private final int[] jumpTrail = new int[kJumpTrailLength];
+        private int jumpTrailCount;
+
+        private Executor(Program program) {
+            this.program = program;
+            addRequirements(program.requirements);
+
+            runStacks = new RunStack[program.instructionCount];
+            altRunStacks = new RunStack[program.instructionCount];
+            for (int i = 0; i < program.instructionCount; i++) {
+                if (program.startsStack[i]) {
+                    runStacks[i] = new RunStack(
+                        Program.createStackCommand(
+                            program.opcodes[i],
+                            program.operands[i]
+                        ),
+                        isRepeatBlock(i),
+                        program.groups[i]
+                    );
                 }
+                if (program.altStartsStack[i]) {
+                    altRunStacks[i] = new RunStack(
+                        Program.createStackCommand(
+                            program.opcodes[i],
+                            program.altOperands[i]
+                        ),
+                        isRepeatBlock(i),
+                        program.altGroups[i]
+                    );
+                }
+            }
+            stacks = new StackRegistry(
+                program.stackCount,
+                program.groupCapacities
+            );
+            triggerWakes = new TriggerWake[program.instructionCount];
+            for (int i = 0; i < program.instructionCount; i++) {
+                if (program.opcodes[i] == OP_YIELD_TRIGGER) {
+                    triggerWakes[i] = new TriggerWake(
+                        program.conditions[i],
+                        this
+                    );
+                }
+            }
+
+            profiler = program.profilerName != null
+                ? new OrchestratorProfiler(
+                    program.profilerName,
+                    program.blockLabels
+                )
+                : null;
+        }
+
+        public Program getProgram() {
+            return program;
+        }
+
+        /** @return the profiler, or null if profiling was not enabled */
+        public OrchestratorProfiler getProfiler() {
+            return profiler;
+        }
+
+        @Override
+        public void initialize() {
+            if (
+                program.sharesCommands &&
+                !program.sharedOwner.compareAndSet(null, this) &&
+                program.sharedOwner.get() != this
+            ) {
+                DriverStation.reportError(
+                    "Orchestrator program shares command instances and is " +
+                    "already running on another executor, pass command " +
+                    "factories to run it on several at once",
+                    false
+                );
+                refused = true;
+                runFinished = true;
+                return;
+            }
+            refused = false;
+            runIndex = 0;
+            lastRunIndex = 0;
+            runFinished = false;
+            lastBlockInitializedSeconds = getTime();
+            exhaustedCycles = 0;
+            runawayReported = false;
+            disarm();
+            stacks.clear();
+        }
+
+        @Override
+        public void execute() {
+            if (refused) {
+                return;
+            }
+            if (parked && stacks.liveCount == 0 && !isWoken()) {
+                // nothing to do until the timer wheel or a trigger wakes us
+                return;
+            }
+            parked = false;
+
+            if (profiler != null) {
+                executeProfiled();
+                return;
+            }
+
+            runStacks();
+            runBlocks();
+            checkFinished();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return runFinished;
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            if (refused) {
+                refused = false;
+                return;
+            }
+            if (profiler != null) {
+                profiler.recordResume(System.nanoTime());
+            }
+            disarm();
+            if (program.exitCallback != null) {
+                program.exitCallback.accept(interrupted);
+            }
+            for (int i = 0; i < stacks.liveCount; i++) {
+                RunStack stack = stacks.live[i];
+                if (stack.repeating) {
+                    stack.command.end(true);
+                } else {
+                    cancelStack(stack);
+                }
+            }
+            stacks.clear();
+            runFinished = true;
+            program.sharedOwner.compareAndSet(this, null);
+        }
+
+        /** same as execute(), timing each block with the profiler */
+        private void executeProfiled() {
+            long cycleStartNanos = System.nanoTime();
+            profiler.recordResume(cycleStartNanos);
+            runStacks();
+            long stacksEndNanos = System.nanoTime();
+
+            long blockStartNanos = stacksEndNanos;
+            startBudget(stacksEndNanos);
+            boolean suspended = false;
+            while (runIndex < program.instructionCount) {
+                if (isBudgetExhausted()) {
+                    profiler.recordYield(runIndex, blockStartNanos);
+                    suspended = true;
+                    break;
+                }
+                int index = runIndex;
+                int nextIndex = runBlock();
+                long blockEndNanos = System.nanoTime();
+                profiler.recordBlock(index, blockEndNanos - blockStartNanos);
+                blockStartNanos = blockEndNanos;
+                if (nextIndex == kYield) {
+                    profiler.recordYield(index, blockEndNanos);
+                    break;
+                } else if (nextIndex == kExit) {
+                    break;
+                }
+            }
+
+            endBudget(suspended);
+            checkFinished();
+            profiler.recordCycle(
+                stacksEndNanos - cycleStartNanos,
+                blockStartNanos - stacksEndNanos
+            );
+        }
+
+        private void runStacks() {
+            for (int i = 0; i < stacks.liveCount;) {
+                RunStack stack = stacks.live[i];
+                Command command = stack.command;
                 command.execute();
-            } else {
-                if (!command.isFinished()) {
-                    command.execute();
-                    stacksRunFinished = false;
+                if (!stack.repeating && command.isFinished()) {
+                    // finished stacks leave their group this cycle, so a join
+                    // on it can continue before the next one. the last stack
+                    // is swapped into this slot
+                    command.end(false);
+                    stacks.remove(stack);
+                    stacks.groupFinishedCounts[stack.group]++;
+                    continue;
+                }
+                i++;
+            }
+        }
+
+        private void runBlocks() {
+            startBudget(program.timeBudgetNanos > 0 ? System.nanoTime() : 0);
+            boolean suspended = false;
+            while (runIndex < program.instructionCount) {
+                if (isBudgetExhausted()) {
+                    suspended = true;
+                    break;
+                }
+                int nextIndex = runBlock();
+                if (nextIndex == kYield || nextIndex == kExit) {
+                    break;
                 }
             }
+            endBudget(suspended);
         }
 
-        while (runIndex < blocks.size()) {
+        /**
+         * runs the block at runIndex, advancing runIndex unless the block
+         * yields or exits
+         *
+         * @return the index of the next block, kYield or kExit
+         */
+        private int runBlock() {
             if (lastRunIndex != runIndex) {
                 lastBlockInitializedSeconds = getTime();
             }
             lastRunIndex = runIndex;
-            RunBlock commandBlock = blocks.get(runIndex);
-            RunBlockStatus status = commandBlock.callback.get();
-            if (status == RunBlockStatus.CONTINUE) {
-                runIndex++;
-            } else if (status == RunBlockStatus.JUMP) {
-                // do nothing
-            } else if (status == RunBlockStatus.YIELD) {
-                break;
-            } else if (status == RunBlockStatus.EXIT) {
+            cycleBlockCount++;
+            int nextIndex = step(runIndex);
+            if (nextIndex == kExit) {
                 runFinished = true;
-                break;
+            } else if (nextIndex != kYield) {
+                if (nextIndex != runIndex + 1) {
+                    jumpTrail[jumpTrailCount++ % kJumpTrailLength] = nextIndex;
+                }
+                runIndex = nextIndex;
+            }
+            return nextIndex;
+        }
+
+        private void checkFinished() {
+            if (
+                runIndex == program.instructionCount &&
+                stacks.commandCount == 0
+            ) {
+                runFinished = true;
+            }
+        }
+
+        private void startBudget(long nowNanos) {
+            cycleBlockCount = 0;
+            cycleStartNanos = nowNanos;
+            jumpTrailCount = 0;
+        }
+
+        private boolean isBudgetExhausted() {
+            if (cycleBlockCount >= program.blockBudget) {
+                return true;
+            }
+            return (
+                program.timeBudgetNanos > 0 &&
+                System.nanoTime() - cycleStartNanos >= program.timeBudgetNanos
+            );
+        }
+
+        private void endBudget(boolean suspended) {
+            if (!suspended) {
+                exhaustedCycles = 0;
+                return;
+            }
+            exhaustedCycles++;
+            if (exhaustedCycles >= kRunawayCycles && !runawayReported) {
+                runawayReported = true;
+                DriverStation.reportError(
+                    "Orchestrator has run out of its block budget for " +
+                    exhaustedCycles +
+                    " cycles without yielding, likely an infinite loop " +
+                    "through: " +
+                    describeJumpTrail(),
+                    false
+                );
+            }
+        }
+
+        private String describeJumpTrail() {
+            if (jumpTrailCount == 0) {
+                return "block " + runIndex + program.describeBlock(runIndex);
+            }
+            StringBuilder path = new StringBuilder();
+            int first = Math.max(0, jumpTrailCount - kJumpTrailLength);
+            for (int i = first; i < jumpTrailCount; i++) {
+                int target = jumpTrail[i % kJumpTrailLength];
+                if (path.length() > 0) {
+                    path.append(" -> ");
+                }
+                path.append(
+                    program.opcodes[target] == OP_LABEL
+                        ? (String) program.operands[target]
+                        : "block " + target
+                );
+            }
+            return path.toString();
+        }
+
+        /**
+         * runs the instruction at the given index
+         *
+         * @return the index of the next instruction, kYield or kExit
+         */
+        private int step(int index) {
+            Program program = this.program;
+            switch (program.opcodes[index]) {
+                case OP_LABEL:
+                    return index + 1;
+                case OP_EXIT:
+                    return kExit;
+                case OP_EXITIF:
+                    return program.conditions[index].getAsBoolean()
+                        ? kExit
+                        : index + 1;
+                case OP_JUMP:
+                    return program.targets[index];
+                case OP_JUMPIF: {
+                    int target = program.conditions[index].getAsBoolean()
+                        ? program.targets[index]
+                        : program.altTargets[index];
+                    return target != kNoTarget ? target : index + 1;
+                }
+                case OP_RUN:
+                    ((Runnable) program.operands[index]).run();
+                    return index + 1;
+                case OP_RUNIF: {
+                    Object callback = program.conditions[index].getAsBoolean()
+                        ? program.operands[index]
+                        : program.altOperands[index];
+                    if (callback != null) {
+                        ((Runnable) callback).run();
+                    }
+                    return index + 1;
+                }
+                case OP_REPEAT:
+                    runRepeatBlock(runStacks[index]);
+                    return index + 1;
+                case OP_REPEATIF:
+                    if (program.conditions[index].getAsBoolean()) {
+                        if (runStacks[index] != null) {
+                            runRepeatBlock(runStacks[index]);
+                        }
+                    } else {
+                        if (altRunStacks[index] != null) {
+                            runRepeatBlock(altRunStacks[index]);
+                        }
+                    }
+                    return index + 1;
+                case OP_COMMAND:
+                    startStack(runStacks[index]);
+                    return index + 1;
+                case OP_COMMANDIF:
+                    if (program.conditions[index].getAsBoolean()) {
+                        if (runStacks[index] != null) {
+                            startStack(runStacks[index]);
+                        }
+                    } else {
+                        if (altRunStacks[index] != null) {
+                            startStack(altRunStacks[index]);
+                        }
+                    }
+                    return index + 1;
+                case OP_YIELD:
+                    if (
+                        !program.conditions[index].getAsBoolean() &&
+                        getTime() - lastBlockInitializedSeconds <=
+                        program.timeouts[index]
+                    ) {
+                        return kYield;
+                    }
+                    return index + 1;
+                case OP_YIELD_TIMEOUT:
+                    if (armedIndex != index) {
+                        arm(index, null);
+                    }
+                    if (!timeout.isExpired()) {
+                        parked = true;
+                        return kYield;
+                    }
+                    disarm();
+                    return index + 1;
+                case OP_YIELD_TRIGGER:
+                    if (armedIndex != index) {
+                        if (program.conditions[index].getAsBoolean()) {
+                            return index + 1;
+                        }
+                        arm(index, triggerWakes[index]);
+                    }
+                    if (!isWoken()) {
+                        parked = true;
+                        return kYield;
+                    }
+                    disarm();
+                    return index + 1;
+                case OP_YIELD_CONDITION:
+                    return program.conditions[index].getAsBoolean()
+                        ? index + 1
+                        : kYield;
+                case OP_JOIN:
+                    if (stacks.groupCommandCounts[program.groups[index]] == 0) {
+                        disarm();
+                        return index + 1;
+                    }
+                    if (armedIndex != index) {
+                        arm(index, null);
+                    }
+                    if (timeout.isExpired()) {
+                        disarm();
+                        return index + 1;
+                    }
+                    return kYield;
+                case OP_RACE: {
+                    int group = program.groups[index];
+                    if (armedIndex != index) {
+                        arm(index, null);
+                        raceFinishedCount = stacks.groupFinishedCounts[group];
+                    }
+                    if (
+                        stacks.groupFinishedCounts[group] == raceFinishedCount &&
+                        stacks.groupCommandCounts[group] > 0
+                    ) {
+                        return kYield;
+                    }
+                    // the first branch to finish wins, cancel the rest
+                    disarm();
+                    cancelGroup(group);
+                    return index + 1;
+                }
+                case OP_CANCEL_GROUP:
+                    cancelGroup(program.groups[index]);
+                    return index + 1;
+                case OP_CANCEL_ALL:
+                    for (int i = 0; i < stacks.liveCount; i++) {
+                        cancelStack(stacks.live[i]);
+                    }
+                    stacks.clear();
+                    return index + 1;
+                case OP_CANCEL_UNTRACKED:
+                    cancelGroup(kUntrackedGroup);
+                    return index + 1;
+                case OP_CANCEL_TRACKED:
+                    for (int group = 1; group < program.groupCount; group++) {
+                        cancelGroup(group);
+                    }
+                    return index + 1;
+                case OP_PRINT:
+                    System.out.println((String) program.operands[index]);
+                    return index + 1;
+                case OP_PRINT_SUPPLIER:
+                    System.out.println(
+                        ((Supplier<?>) program.operands[index]).get()
+                    );
+                    return index + 1;
+                default:
+                    throw new IllegalStateException(
+                        "Invalid opcode: " + program.opcodes[index]
+                    );
+            }
+        }
+
+        /** parks on the block's timeout and, if given, a trigger edge */
+        private void arm(int index, TriggerWake wake) {
+            armedIndex = index;
+            double timeoutSeconds = program.timeouts[index];
+            if (Double.isFinite(timeoutSeconds)) {
+                timeout.schedule(lastBlockInitializedSeconds + timeoutSeconds);
+            }
+            if (wake != null) {
+                armedWake = wake;
+                triggerFired = false;
+                wake.watch();
+            }
+        }
+
+        private void disarm() {
+            if (armedWake != null) {
+                armedWake.unwatch();
+                armedWake = null;
+            }
+            triggerFired = false;
+            armedIndex = -1;
+            parked = false;
+            timeout.cancel();
+        }
+
+        private boolean isWoken() {
+            return timeout.isExpired() || triggerFired;
+        }
+
+        private boolean isRepeatBlock(int index) {
+            int opcode = program.opcodes[index];
+            return opcode == OP_REPEAT || opcode == OP_REPEATIF;
+        }
+
+        private void startStack(RunStack stack) {
+            // a block that runs again restarts its stack instead of adding
+            // another, ending the still running command as interrupted first
+            if (stacks.contains(stack)) {
+                stack.command.end(true);
             } else {
-                throw new IllegalStateException("Invalid RunBlockStatus");
+                stacks.add(stack);
             }
+            stack.command.initialize();
         }
 
-        for (RunStack stack : stacks) {
-            if (!stack.command.isFinished()) {
-                stacksRunFinished = false;
-                break;
+        private void runRepeatBlock(RunStack stack) {
+            startStack(stack);
+            ((RepeatRunner) stack.command).callback.run();
+        }
+
+        private void cancelGroup(int group) {
+            RunStack[] members = stacks.groupMembers[group];
+            while (stacks.groupSizes[group] > 0) {
+                RunStack stack = members[stacks.groupSizes[group] - 1];
+                cancelStack(stack);
+                stacks.remove(stack);
             }
         }
 
-        if (runIndex == blocks.size() && stacksRunFinished) {
-            runFinished = true;
+        private void cancelStack(RunStack stack) {
+            if (stack.command.isFinished()) {
+                return;
+            }
+            stack.command.end(true);
+        }
+
+        private double getTime() {
+            return Clock.getTime();
+        }
+    }
+
+    /**
+     * a background command started by a repeat or command block. each executor
+     * allocates one per block and reuses it every time the block runs
+     */
+    private static final class RunStack {
+
+        private final Command command;
+        private final boolean repeating;
+        private final int group;
+
+        // positions in the registry, or -1 while the stack is not live
+        private int slot = -1;
+        private int groupSlot = -1;
+
+        private RunStack(Command command, boolean repeating, int group) {
+            this.command = command;
+            this.repeating = repeating;
+            this.group = group;
+        }
+    }
+
+    /**
+     * slot-based set of live stacks, indexed by group. every stack knows its
+     * slot in both the live array and its group array, so adding and removing
+     * is a swap with the last element
+     */
+    private static final class StackRegistry {
+
+        private final RunStack[] live;
+        private int liveCount;
+        // number of live stacks that are not repeating
+        private int commandCount;
+
+        private final RunStack[][] groupMembers;
+        private final int[] groupSizes;
+        // live stacks that are not repeating in each group
+        private final int[] groupCommandCounts;
+        // stacks in each group that have finished on their own
+        private final int[] groupFinishedCounts;
+
+        private StackRegistry(int capacity, int[] groupCapacities) {
+            live = new RunStack[capacity];
+            groupMembers = new RunStack[groupCapacities.length][];
+            for (int i = 0; i < groupCapacities.length; i++) {
+                groupMembers[i] = new RunStack[groupCapacities[i]];
+            }
+            groupSizes = new int[groupCapacities.length];
+            groupCommandCounts = new int[groupCapacities.length];
+            groupFinishedCounts = new int[groupCapacities.length];
+        }
+
+        private boolean contains(RunStack stack) {
+            return stack.slot >= 0;
+        }
+
+        private void add(RunStack stack) {
+            stack.slot = liveCount;
+            live[liveCount++] = stack;
+            RunStack[] members = groupMembers[stack.group];
+            stack.groupSlot = groupSizes[stack.group];
+            members[groupSizes[stack.group]++] = stack;
+            if (!stack.repeating) {
+                commandCount++;
+                groupCommandCounts[stack.group]++;
+            }
+        }
+
+        private void remove(RunStack stack) {
+            RunStack lastLive = live[--liveCount];
+            live[stack.slot] = lastLive;
+            lastLive.slot = stack.slot;
+            live[liveCount] = null;
+
+            RunStack[] members = groupMembers[stack.group];
+            RunStack lastMember = members[--groupSizes[stack.group]];
+            members[stack.groupSlot] = lastMember;
+            lastMember.groupSlot = stack.groupSlot;
+            members[groupSizes[stack.group]] = null;
+
+            stack.slot = -1;
+            stack.groupSlot = -1;
+            if (!stack.repeating) {
+                commandCount--;
+                groupCommandCounts[stack.group]--;
+            }
+        }
+
+        private void clear() {
+            while (liveCount > 0) {
+                remove(live[liveCount - 1]);
+            }
+        }
+    }
+
+    /**
+     * an executor parked on one of its trigger yield blocks. a single shared
+     * poller checks the trigger once per cycle, before commands run, and only
+     * while the executor is parked on it, so parked executors do no work and
+     * nothing is bound to the scheduler per executor. only used from the main
+     * robot thread
+     */
+    private static final class TriggerWake {
+
+        // wakes with a parked executor
+        private static TriggerWake[] watched = new TriggerWake[8];
+        private static int watchedCount;
+
+        @SuppressWarnings("unused")
+        private static final SubsystemBase poller = new SubsystemBase() {
+            @Override
+            public void periodic() {
+                pollWatched();
+            }
+        };
+
+        private final BooleanSupplier condition;
+        private final Executor executor;
+        private int watchedSlot = -1;
+
+        private TriggerWake(BooleanSupplier condition, Executor executor) {
+            this.condition = condition;
+            this.executor = executor;
+        }
+
+        private static void pollWatched() {
+            // firing swaps an already polled wake into this slot
+            for (int i = watchedCount - 1; i >= 0; i--) {
+                TriggerWake wake = watched[i];
+                if (wake.condition.getAsBoolean()) {
+                    wake.executor.triggerFired = true;
+                    wake.unwatch();
+                }
+            }
+        }
+
+        /** only called after the executor saw the trigger false */
+        private void watch() {
+            if (watchedSlot >= 0) {
+                return;
+            }
+            if (watchedCount == watched.length) {
+                watched = Arrays.copyOf(watched, watchedCount * 2);
+            }
+            watchedSlot = watchedCount;
+            watched[watchedCount++] = this;
+        }
+
+        private void unwatch() {
+            if (watchedSlot < 0) {
+                return;
+            }
+            TriggerWake last = watched[--watchedCount];
+            watched[watchedSlot] = last;
+            last.watchedSlot = watchedSlot;
+            watched[watchedCount] = null;
+            watchedSlot = -1;
         }
     }
 
+    /** runs the callback of a repeat block once every cycle */
+    private static final class RepeatRunner extends Command {
+
+        private final Runnable callback;
+
+        private RepeatRunner(Runnable callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void execute() {
+            callback.run();
+        }
+    }
+
+    private final ArrayList<Block> blocks = new ArrayList<>();
+    private final Map<String, Integer> labels = new HashMap<>();
+
+    private Consumer<Boolean> exitCallback;
+    private String profilerName;
+    private int blockBudget = kDefaultBlockBudget;
+    private long timeBudgetNanos;
+
+    private Program program;
+    private Executor executor;
+
+    public Orchestrator() {}
+
+    /**
+     * compiles the blocks into a {@link Program}, resolving every jump target.
+     * called automatically on the first initialize(), after which no more
+     * blocks may be added
+     *
+     * @throws IllegalStateException if a jump targets an unknown label or a
+     *     block can never be reached
+     */
+    public Program build() {
+        if (program == null) {
+            program = new Program(this);
+        }
+        return program;
+    }
+
+    @Override
+    public void initialize() {
+        if (executor == null) {
+            executor = build().executor();
+        }
+        executor.initialize();
+    }
+
+    @Override
+    public void execute() {
+        executor.execute();
+    }
+
     @Override
     public boolean isFinished() {
-        return runFinished;
+        return executor.isFinished();
     }
 
     @Override
     public void end(boolean interrupted) {
-        if (exitCallback != null) {
-            exitCallback.accept(interrupted);
-        }
-        for (RunStack stack : stacks) {
-            if (stack.repeating) {
-                stack.command.end(true);
-            } else {
-                cancelStack(stack);
-            }
+        executor.end(interrupted);
+    }
+
+    /**
+     * records per block execution statistics under the given name, published
+     * to NetworkTables and the data log. see {@link OrchestratorProfiler}
+     */
+    public Orchestrator profile(String name) {
+        checkNotBuilt();
+        profilerName = name;
+        return this;
+    }
+
+    /** @return the profiler of this command, or null if it is not profiled */
+    public OrchestratorProfiler getProfiler() {
+        return executor != null ? executor.getProfiler() : null;
+    }
+
+    /**
+     * limits how much of the program runs in a single cycle. once either limit
+     * is reached the program is suspended and continues from the same block
+     * next cycle. a program that keeps running out of budget without yielding
+     * is reported as a runaway loop
+     *
+     * @param maxBlocks blocks run per cycle, defaults to 1000
+     * @param maxMicroseconds time spent running blocks per cycle, or 0 for no
+     *     time limit
+     */
+    public Orchestrator budget(int maxBlocks, double maxMicroseconds) {
+        checkNotBuilt();
+        if (maxBlocks <= 0) {
+            throw new IllegalArgumentException(
+                "Block budget must be positive: " + maxBlocks
+            );
         }
-        stacks.clear();
-        untrackedStacks.clear();
-        trackedStacks.clear();
-        runFinished = true;
+        blockBudget = maxBlocks;
+        timeBudgetNanos = (long) (Math.max(0, maxMicroseconds) * 1000);
+        return this;
+    }
+
+    public Orchestrator budget(int maxBlocks) {
+        return budget(maxBlocks, 0);
     }
 
     public Orchestrator require(SubsystemBase subsystem) {
+        checkNotBuilt();
         super.addRequirements(subsystem);
         return this;
     }
 
     public Orchestrator exit() {
-        addBlock(() -> RunBlockStatus.EXIT);
+        addBlock(Block.simple(OP_EXIT));
         return this;
     }
 
     public Orchestrator exitif(BooleanSupplier condition) {
-        addBlock(() -> {
-            if (condition.getAsBoolean()) {
-                return RunBlockStatus.EXIT;
-            }
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.condition(OP_EXITIF, condition));
         return this;
     }
 
     public Orchestrator onexit(Consumer<Boolean> callback) {
+        checkNotBuilt();
         exitCallback = callback;
         return this;
     }
@@ -155,36 +1341,32 @@ public class Orchestrator extends Command {
         if (labels.containsKey(name)) {
             throw new IllegalArgumentException("Label already exists: " + name);
         }
-        addBlock(() -> RunBlockStatus.CONTINUE);
+        addBlock(Block.operand(OP_LABEL, name));
         addLabel(name, blocks.size() - 1);
         return this;
     }
 
     public Orchestrator jump(String label) {
-        addBlock(() -> {
-            runIndex = labels.get(label);
-            return RunBlockStatus.JUMP;
-        });
+        if (label == null) {
+            throw new IllegalArgumentException("Jump label cannot be null");
+        }
+        addBlock(Block.jump(null, label, null));
         return this;
     }
 
+    /**
+     * jumps to trueLabel or falseLabel depending on the condition. a null
+     * label continues on to the next block
+     */
     public Orchestrator jumpif(
         BooleanSupplier condition,
         String trueLabel,
         String falseLabel
     ) {
-        addBlock(() -> {
-            if (condition.getAsBoolean()) {
-                if (trueLabel != null) {
-                    runIndex = labels.get(trueLabel);
-                }
-            } else {
-                if (falseLabel != null) {
-                    runIndex = labels.get(falseLabel);
-                }
-            }
-            return RunBlockStatus.JUMP;
-        });
+        if (condition == null) {
+            throw new IllegalArgumentException("Jump condition cannot be null");
+        }
+        addBlock(Block.jump(condition, trueLabel, falseLabel));
         return this;
     }
 
@@ -193,10 +1375,7 @@ public class Orchestrator extends Command {
     }
 
     public Orchestrator run(Runnable callback) {
-        addBlock(() -> {
-            callback.run();
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.operand(OP_RUN, callback));
         return this;
     }
 
@@ -205,18 +1384,16 @@ public class Orchestrator extends Command {
         Runnable trueCallback,
         Runnable falseCallback
     ) {
-        addBlock(() -> {
-            if (condition.getAsBoolean()) {
-                if (trueCallback != null) {
-                    trueCallback.run();
-                }
-            } else {
-                if (falseCallback != null) {
-                    falseCallback.run();
-                }
-            }
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(
+            Block.branch(
+                OP_RUNIF,
+                condition,
+                null,
+                trueCallback,
+                null,
+                falseCallback
+            )
+        );
         return this;
     }
 
@@ -228,10 +1405,7 @@ public class Orchestrator extends Command {
     }
 
     public Orchestrator repeat(String group, Runnable callback) {
-        addBlock(() -> {
-            runRepeatBlock(group, callback);
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.stack(OP_REPEAT, group, callback));
         return this;
     }
 
@@ -246,18 +1420,16 @@ public class Orchestrator extends Command {
         String falseGroup,
         Runnable falseCallback
     ) {
-        addBlock(() -> {
-            if (condition.getAsBoolean()) {
-                if (trueCallback != null) {
-                    runRepeatBlock(trueGroup, trueCallback);
-                }
-            } else {
-                if (falseCallback != null) {
-                    runRepeatBlock(falseGroup, falseCallback);
-                }
-            }
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(
+            Block.branch(
+                OP_REPEATIF,
+                condition,
+                trueGroup,
+                trueCallback,
+                falseGroup,
+                falseCallback
+            )
+        );
         return this;
     }
 
@@ -285,10 +1457,7 @@ public class Orchestrator extends Command {
     }
 
     public Orchestrator command(String group, Command command) {
-        addBlock(() -> {
-            runCommandBlock(group, command);
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.stack(OP_COMMAND, group, command));
         return this;
     }
 
@@ -296,6 +1465,20 @@ public class Orchestrator extends Command {
         return command(null, command);
     }
 
+    /**
+     * like a command block, but every executor of the program creates its own
+     * command from the factory, so the program can run on several executors
+     * at once
+     */
+    public Orchestrator command(String group, Supplier<Command> factory) {
+        addBlock(Block.stack(OP_COMMAND, group, factory));
+        return this;
+    }
+
+    public Orchestrator command(Supplier<Command> factory) {
+        return command(null, factory);
+    }
+
     public Orchestrator commandif(
         BooleanSupplier condition,
         String trueGroup,
@@ -303,18 +1486,16 @@ public class Orchestrator extends Command {
         String falseGroup,
         Command falseCommand
     ) {
-        addBlock(() -> {
-            if (condition.getAsBoolean()) {
-                if (trueCommand != null) {
-                    runCommandBlock(trueGroup, trueCommand);
-                }
-            } else {
-                if (falseCommand != null) {
-                    runCommandBlock(falseGroup, falseCommand);
-                }
-            }
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(
+            Block.branch(
+                OP_COMMANDIF,
+                condition,
+                trueGroup,
+                trueCommand,
+                falseGroup,
+                falseCommand
+            )
+        );
         return this;
     }
 
@@ -342,159 +1523,127 @@ public class Orchestrator extends Command {
         double timeoutSeconds,
         BooleanSupplier condition
     ) {
-        addBlock(() -> {
-            if (
-                !condition.getAsBoolean() &&
-                getTime() - lastBlockInitializedSeconds <= timeoutSeconds
-            ) {
-                return RunBlockStatus.YIELD;
-            }
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.yield(OP_YIELD, condition, timeoutSeconds));
         return this;
     }
 
+    /**
+     * yields until the timeout passes. the executor parks on the shared
+     * {@link TimerWheel} and does no work while it waits
+     */
     public Orchestrator yield(double timeoutSeconds) {
-        addBlock(() -> {
-            if (getTime() - lastBlockInitializedSeconds <= timeoutSeconds) {
-                return RunBlockStatus.YIELD;
-            }
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.yield(OP_YIELD_TIMEOUT, null, timeoutSeconds));
+        return this;
+    }
+
+    /**
+     * yields until the trigger becomes true or the timeout passes. unlike a
+     * plain condition the executor parks and is woken by the trigger, which is
+     * polled once per cycle while the executor waits and not at all otherwise
+     */
+    public Orchestrator yieldForTrigger(
+        double timeoutSeconds,
+        Trigger trigger
+    ) {
+        addBlock(Block.yield(OP_YIELD_TRIGGER, trigger, timeoutSeconds));
         return this;
     }
 
+    public Orchestrator yieldForTrigger(Trigger trigger) {
+        return yieldForTrigger(Double.POSITIVE_INFINITY, trigger);
+    }
+
     public Orchestrator yield(BooleanSupplier condition) {
-        addBlock(() -> {
-            if (!condition.getAsBoolean()) {
-                return RunBlockStatus.YIELD;
-            }
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.condition(OP_YIELD_CONDITION, condition));
+        return this;
+    }
+
+    /**
+     * starts every command in the background under the group, like a command
+     * block for each
+     */
+    public Orchestrator fork(String group, Command... commands) {
+        requireGroup(group);
+        for (Command command : commands) {
+            command(group, command);
+        }
+        return this;
+    }
+
+    /**
+     * yields until every command started in the group has finished or the
+     * timeout passes. repeat blocks in the group are not waited on
+     */
+    public Orchestrator join(String group, double timeoutSeconds) {
+        requireGroup(group);
+        addBlock(Block.group(OP_JOIN, group, timeoutSeconds));
+        return this;
+    }
+
+    public Orchestrator join(String group) {
+        return join(group, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * starts every command in the background under the group and yields until
+     * the first of them finishes, then cancels the rest of the group
+     */
+    public Orchestrator race(String group, Command... commands) {
+        fork(group, commands);
+        addBlock(Block.group(OP_RACE, group, Double.POSITIVE_INFINITY));
         return this;
     }
 
     public Orchestrator cancelStackGroup(String group) {
-        addBlock(() -> {
-            if (!trackedStacks.containsKey(group)) {
-                // throw new IllegalAccessError("Unable to cancel stack group: " + group + "
-                // because it does not exist");
-                return RunBlockStatus.CONTINUE;
-            }
-            var stackGroup = trackedStacks.get(group);
-            for (RunStack stack : stackGroup) {
-                cancelStack(stack);
-                stacks.remove(stack);
-            }
-            trackedStacks.remove(group);
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.group(OP_CANCEL_GROUP, group, 0));
         return this;
     }
 
     public Orchestrator cancelAllStacks() {
-        addBlock(() -> {
-            for (RunStack stack : stacks) {
-                cancelStack(stack);
-            }
-            stacks.clear();
-            untrackedStacks.clear();
-            trackedStacks.clear();
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.simple(OP_CANCEL_ALL));
         return this;
     }
 
     public Orchestrator cancelAllUntrackedStacks() {
-        addBlock(() -> {
-            for (RunStack stack : untrackedStacks) {
-                cancelStack(stack);
-                stacks.remove(stack);
-            }
-            untrackedStacks.clear();
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.simple(OP_CANCEL_UNTRACKED));
         return this;
     }
 
     public Orchestrator cancelAllTrackedStacks() {
-        addBlock(() -> {
-            trackedStacks.forEach((group, stackGroup) -> {
-                for (RunStack stack : stackGroup) {
-                    cancelStack(stack);
-                    stacks.remove(stack);
-                }
-            });
-            trackedStacks.clear();
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.simple(OP_CANCEL_TRACKED));
         return this;
     }
 
     public Orchestrator print(String text) {
-        addBlock(() -> {
-            System.out.println(text);
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.operand(OP_PRINT, text));
         return this;
     }
 
     public Orchestrator print(Supplier<String> supplier) {
-        addBlock(() -> {
-            System.out.println(supplier.get());
-            return RunBlockStatus.CONTINUE;
-        });
+        addBlock(Block.operand(OP_PRINT_SUPPLIER, supplier));
         return this;
     }
 
-    private void addBlock(Supplier<RunBlockStatus> callback) {
-        blocks.add(new RunBlock(callback));
+    private void addBlock(Block block) {
+        checkNotBuilt();
+        blocks.add(block);
     }
 
-    private RunStack addStack(
-        String group,
-        Command command,
-        boolean repeating
-    ) {
-        command.initialize();
-        RunStack stack = new RunStack(command, repeating);
-        stacks.add(stack);
+    private void requireGroup(String group) {
         if (group == null) {
-            untrackedStacks.add(stack);
-        } else {
-            if (!trackedStacks.containsKey(group)) {
-                trackedStacks.put(group, new ArrayList<>());
-            }
-            var stackGroup = trackedStacks.get(group);
-            stackGroup.add(stack);
+            throw new IllegalArgumentException("Group cannot be null");
         }
-        return stack;
-    }
-
-    private void runRepeatBlock(String group, Runnable callback) {
-        Orchestrator command = new Orchestrator();
-        command.run(callback::run);
-        addStack(group, command, true);
-        callback.run();
-    }
-
-    private void runCommandBlock(String group, Command command) {
-        addStack(group, command, false);
-        command.getRequirements().clear();
     }
 
     private void addLabel(String name, int destination) {
         labels.put(name, destination);
     }
 
-    private void cancelStack(RunStack stack) {
-        if (stack.command.isFinished()) {
-            return;
+    private void checkNotBuilt() {
+        if (program != null) {
+            throw new IllegalStateException(
+                "Cannot modify an Orchestrator after it has been built"
+            );
         }
-        stack.command.end(true);
-    }
-
-    private double getTime() {
-        return MathSharedStore.getTimestamp();
     }
 }
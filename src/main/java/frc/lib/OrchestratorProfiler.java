@@ -0,0 +1,293 @@
+package frc.lib;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringArrayPublisher;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.DoubleArrayLogEntry;
+import edu.wpi.first.util.datalog.StringArrayLogEntry;
+import edu.wpi.first.wpilibj.DataLogManager;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * per block execution statistics for an {@link Orchestrator}. every array is
+ * allocated up front so recording a sample never allocates, and the stats are
+ * published to NetworkTables and the data log once every
+ * {@link #kPublishPeriodCycles} cycles. executors profiled under the same
+ * name share one set of topics and log entries, so rebuilding a program does
+ * not open them again
+ *
+ * <p>p99 is estimated from a power-of-two histogram, so it reports the upper
+ * bound of the bucket the 99th percentile sample falls in
+ */
+public final class OrchestratorProfiler {
+
+    private static final int kPublishPeriodCycles = 50;
+    // power-of-two nanosecond buckets, the last one holds everything longer
+    private static final int kHistogramBuckets = 40;
+    private static final double kPercentile = 0.99;
+
+    private final int blockCount;
+    private final String[] blockLabels;
+
+    private final long[] runCounts;
+    private final long[] totalNanos;
+    private final long[] minNanos;
+    private final long[] maxNanos;
+    private final long[] yieldedNanos;
+    private final long[] histogram;
+
+    private long cycles;
+    private long lastStacksNanos, maxStacksNanos, totalStacksNanos;
+    private long lastBlocksNanos, maxBlocksNanos, totalBlocksNanos;
+
+    private int yieldedIndex = -1;
+    private long yieldedSinceNanos;
+
+    // reused buffers for publishing
+    private final double[] blockBuffer;
+    private final double[] cycleBuffer = new double[7];
+
+    private final String name;
+    // opened on the first publish, so a profiler that never publishes does
+    // not start the data log
+    private Outputs outputs;
+
+    // outputs by profiler name, reused by every executor profiled under the
+    // name so rebuilding a program does not open the topics again
+    private static final Map<String, Outputs> outputsByName = new HashMap<>();
+
+    OrchestratorProfiler(String name, String[] blockLabels) {
+        this.name = name;
+        this.blockCount = blockLabels.length;
+        this.blockLabels = blockLabels;
+
+        runCounts = new long[blockCount];
+        totalNanos = new long[blockCount];
+        minNanos = new long[blockCount];
+        maxNanos = new long[blockCount];
+        yieldedNanos = new long[blockCount];
+        histogram = new long[blockCount * kHistogramBuckets];
+        blockBuffer = new double[blockCount];
+        reset();
+    }
+
+    /** the NetworkTables publishers and data log entries of one name */
+    private static final class Outputs {
+
+        private final StringArrayPublisher labelPublisher;
+        private final DoubleArrayPublisher runCountPublisher;
+        private final DoubleArrayPublisher minPublisher;
+        private final DoubleArrayPublisher meanPublisher;
+        private final DoubleArrayPublisher maxPublisher;
+        private final DoubleArrayPublisher p99Publisher;
+        private final DoubleArrayPublisher yieldedPublisher;
+        private final DoubleArrayPublisher cyclePublisher;
+
+        private final StringArrayLogEntry labelLog;
+        private final DoubleArrayLogEntry runCountLog;
+        private final DoubleArrayLogEntry minLog;
+        private final DoubleArrayLogEntry meanLog;
+        private final DoubleArrayLogEntry maxLog;
+        private final DoubleArrayLogEntry p99Log;
+        private final DoubleArrayLogEntry yieldedLog;
+        private final DoubleArrayLogEntry cycleLog;
+
+        private Outputs(String name, DataLog log) {
+            NetworkTable table = NetworkTableInstance.getDefault()
+                .getTable("Orchestrator")
+                .getSubTable(name);
+            labelPublisher = table.getStringArrayTopic("labels").publish();
+            runCountPublisher = table.getDoubleArrayTopic("runCount").publish();
+            minPublisher = table.getDoubleArrayTopic("minNanos").publish();
+            meanPublisher = table.getDoubleArrayTopic("meanNanos").publish();
+            maxPublisher = table.getDoubleArrayTopic("maxNanos").publish();
+            p99Publisher = table.getDoubleArrayTopic("p99Nanos").publish();
+            yieldedPublisher = table
+                .getDoubleArrayTopic("yieldedNanos")
+                .publish();
+            // cycles, last/mean/max stacks loop, last/mean/max block loop
+            cyclePublisher = table.getDoubleArrayTopic("cycleNanos").publish();
+
+            String prefix = "/Orchestrator/" + name + "/";
+            labelLog = new StringArrayLogEntry(log, prefix + "labels");
+            runCountLog = new DoubleArrayLogEntry(log, prefix + "runCount");
+            minLog = new DoubleArrayLogEntry(log, prefix + "minNanos");
+            meanLog = new DoubleArrayLogEntry(log, prefix + "meanNanos");
+            maxLog = new DoubleArrayLogEntry(log, prefix + "maxNanos");
+            p99Log = new DoubleArrayLogEntry(log, prefix + "p99Nanos");
+            yieldedLog = new DoubleArrayLogEntry(log, prefix + "yieldedNanos");
+            cycleLog = new DoubleArrayLogEntry(log, prefix + "cycleNanos");
+        }
+    }
+
+    /** @return the outputs of the name, opening them the first time */
+    private static Outputs outputsFor(String name) {
+        Outputs outputs = outputsByName.get(name);
+        if (outputs == null) {
+            outputs = new Outputs(name, DataLogManager.getLog());
+            outputsByName.put(name, outputs);
+        }
+        return outputs;
+    }
+
+    /** clears every recorded sample */
+    public void reset() {
+        for (int i = 0; i < blockCount; i++) {
+            runCounts[i] = 0;
+            totalNanos[i] = 0;
+            minNanos[i] = Long.MAX_VALUE;
+            maxNanos[i] = 0;
+            yieldedNanos[i] = 0;
+        }
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = 0;
+        }
+        cycles = 0;
+        lastStacksNanos = maxStacksNanos = totalStacksNanos = 0;
+        lastBlocksNanos = maxBlocksNanos = totalBlocksNanos = 0;
+        yieldedIndex = -1;
+    }
+
+    public String getLabel(int index) {
+        return blockLabels[index];
+    }
+
+    public long getRunCount(int index) {
+        return runCounts[index];
+    }
+
+    public long getMinNanos(int index) {
+        return runCounts[index] == 0 ? 0 : minNanos[index];
+    }
+
+    public double getMeanNanos(int index) {
+        return runCounts[index] == 0
+            ? 0
+            : (double) totalNanos[index] / runCounts[index];
+    }
+
+    public long getMaxNanos(int index) {
+        return maxNanos[index];
+    }
+
+    public long getP99Nanos(int index) {
+        long count = runCounts[index];
+        if (count == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(count * kPercentile);
+        long seen = 0;
+        int offset = index * kHistogramBuckets;
+        for (int bucket = 0; bucket < kHistogramBuckets; bucket++) {
+            seen += histogram[offset + bucket];
+            if (seen >= threshold) {
+                return Math.min(1L << bucket, maxNanos[index]);
+            }
+        }
+        return maxNanos[index];
+    }
+
+    public long getYieldedNanos(int index) {
+        return yieldedNanos[index];
+    }
+
+    void recordBlock(int index, long nanos) {
+        runCounts[index]++;
+        totalNanos[index] += nanos;
+        if (nanos < minNanos[index]) {
+            minNanos[index] = nanos;
+        }
+        if (nanos > maxNanos[index]) {
+            maxNanos[index] = nanos;
+        }
+        int bucket = Math.min(
+            64 - Long.numberOfLeadingZeros(nanos),
+            kHistogramBuckets - 1
+        );
+        histogram[index * kHistogramBuckets + bucket]++;
+    }
+
+    void recordYield(int index, long nowNanos) {
+        yieldedIndex = index;
+        yieldedSinceNanos = nowNanos;
+    }
+
+    void recordResume(long nowNanos) {
+        if (yieldedIndex < 0) {
+            return;
+        }
+        yieldedNanos[yieldedIndex] += nowNanos - yieldedSinceNanos;
+        yieldedIndex = -1;
+    }
+
+    void recordCycle(long stacksNanos, long blocksNanos) {
+        cycles++;
+        lastStacksNanos = stacksNanos;
+        totalStacksNanos += stacksNanos;
+        maxStacksNanos = Math.max(maxStacksNanos, stacksNanos);
+        lastBlocksNanos = blocksNanos;
+        totalBlocksNanos += blocksNanos;
+        maxBlocksNanos = Math.max(maxBlocksNanos, blocksNanos);
+        if (cycles % kPublishPeriodCycles == 0) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        if (outputs == null) {
+            // a rebuilt program may label its blocks differently
+            outputs = outputsFor(name);
+            outputs.labelPublisher.set(blockLabels);
+            outputs.labelLog.append(blockLabels);
+        }
+
+        for (int i = 0; i < blockCount; i++) {
+            blockBuffer[i] = runCounts[i];
+        }
+        outputs.runCountPublisher.set(blockBuffer);
+        outputs.runCountLog.append(blockBuffer);
+
+        for (int i = 0; i < blockCount; i++) {
+            blockBuffer[i] = getMinNanos(i);
+        }
+        outputs.minPublisher.set(blockBuffer);
+        outputs.minLog.append(blockBuffer);
+
+        for (int i = 0; i < blockCount; i++) {
+            blockBuffer[i] = getMeanNanos(i);
+        }
+        outputs.meanPublisher.set(blockBuffer);
+        outputs.meanLog.append(blockBuffer);
+
+        for (int i = 0; i < blockCount; i++) {
+            blockBuffer[i] = maxNanos[i];
+        }
+        outputs.maxPublisher.set(blockBuffer);
+        outputs.maxLog.append(blockBuffer);
+
+        for (int i = 0; i < blockCount; i++) {
+            blockBuffer[i] = getP99Nanos(i);
+        }
+        outputs.p99Publisher.set(blockBuffer);
+        outputs.p99Log.append(blockBuffer);
+
+        for (int i = 0; i < blockCount; i++) {
+            blockBuffer[i] = yieldedNanos[i];
+        }
+        outputs.yieldedPublisher.set(blockBuffer);
+        outputs.yieldedLog.append(blockBuffer);
+
+        cycleBuffer[0] = cycles;
+        cycleBuffer[1] = lastStacksNanos;
+        cycleBuffer[2] = (double) totalStacksNanos / cycles;
+        cycleBuffer[3] = maxStacksNanos;
+        cycleBuffer[4] = lastBlocksNanos;
+        cycleBuffer[5] = (double) totalBlocksNanos / cycles;
+        cycleBuffer[6] = maxBlocksNanos;
+        outputs.cyclePublisher.set(cycleBuffer);
+        outputs.cycleLog.append(cycleBuffer);
+    }
+}
@@ -0,0 +1,426 @@
+package frc.lib;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * loads Orchestrator routines from text files in the deploy directory. every
+ * file in {@link #kScriptDirectory} ending in {@link #kScriptExtension} is
+ * parsed into a {@link Orchestrator.Program} named after the file
+ *
+ * <p>each line is one block, using the same vocabulary as {@link Orchestrator}.
+ * names of commands, conditions, actions and subsystems are looked up in a
+ * {@link Registry}, and # starts a comment
+ *
+ * <pre>
+ * require shooter
+ * run stopMusic
+ * yield 3
+ * label spin
+ * command spinUp flywheel
+ * yield 2 shooterReady
+ * jumpif hasNote spin
+ * cancelStackGroup flywheel
+ * exit
+ * </pre>
+ */
+public final class OrchestratorScript {
+
+    public static final String kScriptDirectory = "orchestrator";
+    public static final String kScriptExtension = ".orch";
+
+    private OrchestratorScript() {}
+
+    /** names that scripts can refer to */
+    public static class Registry {
+
+        private final Map<String, Supplier<Command>> commands =
+            new HashMap<>();
+        private final Map<String, BooleanSupplier> conditions = new HashMap<>();
+        private final Map<String, Runnable> actions = new HashMap<>();
+        private final Map<String, SubsystemBase> subsystems = new HashMap<>();
+
+        public Registry() {}
+
+        /**
+         * registers a command factory, every executor of a script gets its
+         * own instance so a script can run under several triggers at once
+         */
+        public Registry command(String name, Supplier<Command> factory) {
+            commands.put(name, factory);
+            return this;
+        }
+
+        public Registry condition(String name, BooleanSupplier condition) {
+            conditions.put(name, condition);
+            return this;
+        }
+
+        public Registry action(String name, Runnable action) {
+            actions.put(name, action);
+            return this;
+        }
+
+        public Registry subsystem(String name, SubsystemBase subsystem) {
+            subsystems.put(name, subsystem);
+            return this;
+        }
+    }
+
+    /**
+     * parses and caches every script in the deploy directory. programs can be
+     * reloaded while the robot is running, and commands from
+     * {@link #launch(String)} always run the latest version
+     */
+    public static class Loader {
+
+        private final Registry registry;
+        private final File directory;
+
+        private final Map<String, Orchestrator.Program> programs =
+            new ConcurrentHashMap<>();
+        private final Map<String, Long> lastModified =
+            new ConcurrentHashMap<>();
+        // the executor of each script's latest program, replaced on reload
+        private final Map<String, Launch> launches = new HashMap<>();
+
+        private record Launch(Orchestrator.Program program, Command proxy) {}
+
+        public Loader(Registry registry) {
+            this(
+                registry,
+                new File(Filesystem.getDeployDirectory(), kScriptDirectory)
+            );
+        }
+
+        public Loader(Registry registry, File directory) {
+            this.registry = registry;
+            this.directory = directory;
+        }
+
+        /**
+         * parses every script that changed since it was last loaded. scripts
+         * that fail to parse are reported and keep their previous program
+         */
+        public synchronized void loadAll() {
+            File[] files = directory.listFiles((dir, name) ->
+                name.endsWith(kScriptExtension)
+            );
+            if (files == null) {
+                return;
+            }
+            for (File file : files) {
+                String name = file.getName();
+                name = name.substring(
+                    0,
+                    name.length() - kScriptExtension.length()
+                );
+                Long loadedModified = lastModified.get(name);
+                if (
+                    loadedModified != null &&
+                    loadedModified == file.lastModified()
+                ) {
+                    continue;
+                }
+                try {
+                    programs.put(name, load(file));
+                    lastModified.put(name, file.lastModified());
+                } catch (
+                    IOException
+                    | IllegalArgumentException
+                    | IllegalStateException e
+                ) {
+                    DriverStation.reportError(
+                        "Failed to load Orchestrator script " +
+                        file.getName() +
+                        ": " +
+                        e.getMessage(),
+                        false
+                    );
+                }
+            }
+        }
+
+        /** runs {@link #loadAll()} on a background thread */
+        public Thread loadAllAsync() {
+            Thread thread = new Thread(this::loadAll, "OrchestratorScript");
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+
+        /** @return the latest program for the script, or null if not loaded */
+        public Orchestrator.Program get(String name) {
+            return programs.get(name);
+        }
+
+        /**
+         * @return a command that runs the latest program for the script each
+         *     time it is scheduled. the program's executor is scheduled as a
+         *     proxy, so it always has the requirements of the latest program
+         */
+        public Command launch(String name) {
+            if (!programs.containsKey(name)) {
+                throw new IllegalArgumentException(
+                    "Orchestrator script is not loaded: " + name
+                );
+            }
+            return Commands.defer(() -> proxyFor(name), Set.of());
+        }
+
+        private Command proxyFor(String name) {
+            Orchestrator.Program program = programs.get(name);
+            Launch launch = launches.get(name);
+            // executors are reused so relaunching a routine does not allocate,
+            // a reloaded script replaces the executor of its old program
+            if (launch == null || launch.program != program) {
+                launch = new Launch(program, program.executor().asProxy());
+                launches.put(name, launch);
+            }
+            return launch.proxy;
+        }
+
+        private Orchestrator.Program load(File file) throws IOException {
+            String source = Files.readString(
+                file.toPath(),
+                StandardCharsets.UTF_8
+            );
+            return compile(file.getName(), tokenize(source), registry);
+        }
+    }
+
+    /** one line of a script, split on whitespace */
+    private record Statement(int line, String[] tokens) {}
+
+    /** parses a script from text */
+    public static Orchestrator.Program parse(
+        String name,
+        String source,
+        Registry registry
+    ) {
+        return compile(name, tokenize(source), registry);
+    }
+
+    private static List<Statement> tokenize(String source) {
+        List<Statement> statements = new ArrayList<>();
+        String[] lines = source.split("\r?\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.strip();
+            if (line.isEmpty()) {
+                continue;
+            }
+            statements.add(new Statement(i + 1, line.split("\\s+")));
+        }
+        return statements;
+    }
+
+    private static Orchestrator.Program compile(
+        String name,
+        List<Statement> statements,
+        Registry registry
+    ) {
+        Orchestrator orchestrator = new Orchestrator();
+        for (Statement statement : statements) {
+            try {
+                compileStatement(orchestrator, statement.tokens, registry);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                    name + ":" + statement.line + ": " + e.getMessage(),
+                    e
+                );
+            }
+        }
+        try {
+            return orchestrator.build();
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(name + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void compileStatement(
+        Orchestrator orchestrator,
+        String[] tokens,
+        Registry registry
+    ) {
+        String keyword = tokens[0];
+        switch (keyword) {
+            case "require":
+                expectArguments(tokens, 1, 1);
+                orchestrator.require(
+                    lookup(registry.subsystems, "subsystem", tokens[1])
+                );
+                break;
+            case "label":
+                expectArguments(tokens, 1, 1);
+                orchestrator.label(tokens[1]);
+                break;
+            case "jump":
+                expectArguments(tokens, 1, 1);
+                orchestrator.jump(tokens[1]);
+                break;
+            case "jumpif":
+                expectArguments(tokens, 2, 3);
+                orchestrator.jumpif(
+                    lookup(registry.conditions, "condition", tokens[1]),
+                    tokens[2],
+                    tokens.length > 3 ? tokens[3] : null
+                );
+                break;
+            case "run":
+                expectArguments(tokens, 1, 1);
+                orchestrator.run(lookup(registry.actions, "action", tokens[1]));
+                break;
+            case "yield":
+                expectArguments(tokens, 1, 2);
+                if (tokens.length == 3) {
+                    orchestrator.yield(
+                        parseSeconds(tokens[1]),
+                        lookup(registry.conditions, "condition", tokens[2])
+                    );
+                } else if (isNumber(tokens[1])) {
+                    orchestrator.yield(parseSeconds(tokens[1]));
+                } else {
+                    orchestrator.yield(
+                        lookup(registry.conditions, "condition", tokens[1])
+                    );
+                }
+                break;
+            case "command":
+                expectArguments(tokens, 1, 2);
+                orchestrator.command(
+                    tokens.length > 2 ? tokens[2] : null,
+                    lookup(registry.commands, "command", tokens[1])
+                );
+                break;
+            case "repeat":
+                expectArguments(tokens, 1, 2);
+                orchestrator.repeat(
+                    tokens.length > 2 ? tokens[2] : null,
+                    lookup(registry.actions, "action", tokens[1])
+                );
+                break;
+            case "fork":
+            case "race": {
+                expectArguments(tokens, 2, Integer.MAX_VALUE);
+                for (int i = 2; i < tokens.length; i++) {
+                    orchestrator.command(
+                        tokens[1],
+                        lookup(registry.commands, "command", tokens[i])
+                    );
+                }
+                if (keyword.equals("race")) {
+                    // the commands are already forked into the group
+                    orchestrator.race(tokens[1]);
+                }
+                break;
+            }
+            case "join":
+                expectArguments(tokens, 1, 2);
+                if (tokens.length > 2) {
+                    orchestrator.join(tokens[1], parseSeconds(tokens[2]));
+                } else {
+                    orchestrator.join(tokens[1]);
+                }
+                break;
+            case "cancelStackGroup":
+                expectArguments(tokens, 1, 1);
+                orchestrator.cancelStackGroup(tokens[1]);
+                break;
+            case "cancelAllStacks":
+                expectArguments(tokens, 0, 0);
+                orchestrator.cancelAllStacks();
+                break;
+            case "cancelAllUntrackedStacks":
+                expectArguments(tokens, 0, 0);
+                orchestrator.cancelAllUntrackedStacks();
+                break;
+            case "cancelAllTrackedStacks":
+                expectArguments(tokens, 0, 0);
+                orchestrator.cancelAllTrackedStacks();
+                break;
+            case "exit":
+                expectArguments(tokens, 0, 0);
+                orchestrator.exit();
+                break;
+            case "exitif":
+                expectArguments(tokens, 1, 1);
+                orchestrator.exitif(
+                    lookup(registry.conditions, "condition", tokens[1])
+                );
+                break;
+            case "print":
+                orchestrator.print(
+                    String.join(" ", List.of(tokens).subList(1, tokens.length))
+                );
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    "Unknown keyword: " + keyword
+                );
+        }
+    }
+
+    private static void expectArguments(
+        String[] tokens,
+        int minimum,
+        int maximum
+    ) {
+        int arguments = tokens.length - 1;
+        if (arguments < minimum || arguments > maximum) {
+            throw new IllegalArgumentException(
+                "Wrong number of arguments for " + tokens[0] + ": " + arguments
+            );
+        }
+    }
+
+    private static <T> T lookup(
+        Map<String, T> names,
+        String kind,
+        String name
+    ) {
+        T value = names.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown " + kind + ": " + name);
+        }
+        return value;
+    }
+
+    private static boolean isNumber(String token) {
+        try {
+            Double.parseDouble(token);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static double parseSeconds(String token) {
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                "Expected a number of seconds: " + token
+            );
+        }
+    }
+}
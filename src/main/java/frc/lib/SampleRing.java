@@ -0,0 +1,64 @@
+package frc.lib;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a bounded single producer, single consumer ring of fixed width samples. one
+ * thread offers and one thread polls, neither ever blocks or allocates, and a
+ * sample offered while the ring is full is dropped and counted
+ */
+public final class SampleRing {
+
+    private final int mask;
+    private final int width;
+    private final double[] data;
+
+    // next position to write, only advanced by the producer
+    private final AtomicLong tail = new AtomicLong();
+    // next position to read, only advanced by the consumer
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** @param capacity number of samples, rounded up to a power of two */
+    public SampleRing(int capacity, int width) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.width = width;
+        this.data = new double[size * width];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /** copies the sample in, only call from the producer thread */
+    public boolean offer(double[] sample) {
+        long position = tail.get();
+        if (position - head.get() > mask) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        int offset = (int) (position & mask) * width;
+        System.arraycopy(sample, 0, data, offset, width);
+        // publishes the sample to the consumer
+        tail.set(position + 1);
+        return true;
+    }
+
+    /** copies the oldest sample out, only call from the consumer thread */
+    public boolean poll(double[] sample) {
+        long position = head.get();
+        if (position == tail.get()) {
+            return false;
+        }
+        int offset = (int) (position & mask) * width;
+        System.arraycopy(data, offset, sample, 0, width);
+        // frees the slot for the producer
+        head.set(position + 1);
+        return true;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,189 @@
+package frc.lib;
+
+import com.revrobotics.PersistMode;
+import com.revrobotics.REVLibError;
+import com.revrobotics.ResetMode;
+import com.revrobotics.spark.SparkBase;
+import com.revrobotics.spark.SparkFlex;
+import com.revrobotics.spark.SparkMax;
+import com.revrobotics.spark.config.SoftLimitConfigAccessor;
+import com.revrobotics.spark.config.SparkBaseConfig;
+import com.revrobotics.spark.config.SparkBaseConfigAccessor;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.RobotBase;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * applies Spark configs through DeviceConfigurator, but only when they
+ * changed. a fingerprint of each device's config and firmware is stored on the
+ * roboRIO, a config with a new fingerprint is persisted to the controller's
+ * flash, and one with a stored fingerprint is skipped. a skip is only trusted
+ * if the key parameters read back from the controller still match the ones
+ * read after the last write, so a swapped or factory reset controller gets
+ * the full config again. deleting the fingerprint file forces every config
+ * to be sent again. in simulation nothing is written to disk
+ */
+public final class SparkConfigStore {
+
+    private static final String kFileName = "spark-config-fingerprints";
+
+    private static final File file = new File(
+        Filesystem.getOperatingDirectory(),
+        kFileName
+    );
+    private static final Properties fingerprints = load();
+
+    private SparkConfigStore() {}
+
+    /**
+     * queues a full config for a device, written and persisted only if it
+     * differs from the last one persisted, or the controller no longer reports
+     * the parameters it had after that write
+     *
+     * @return a future that completes with whether the device has the config
+     */
+    public static CompletableFuture<Boolean> configure(
+        String device,
+        SparkBase motor,
+        SparkBaseConfig config
+    ) {
+        return DeviceConfigurator.submit(device, () -> {
+            String key = key(device, motor);
+            String fingerprint = fingerprint(motor, config);
+            String stored = get(key);
+            if (
+                stored != null &&
+                stored.equals(fingerprint + "-" + readBack(motor))
+            ) {
+                return true;
+            }
+            if (
+                motor.configure(
+                    config,
+                    ResetMode.kNoResetSafeParameters,
+                    PersistMode.kPersistParameters
+                ) !=
+                REVLibError.kOk
+            ) {
+                return false;
+            }
+            put(key, fingerprint + "-" + readBack(motor));
+            return true;
+        });
+    }
+
+    /**
+     * queues a partial config holding only the parameters to change. it is
+     * not persisted, and the device's fingerprint is dropped so the next boot
+     * sends the full config again even if the controller kept power
+     */
+    public static CompletableFuture<Boolean> update(
+        String device,
+        SparkBase motor,
+        SparkBaseConfig changes
+    ) {
+        return DeviceConfigurator.submit(device, () -> {
+            put(key(device, motor), null);
+            return (
+                motor.configure(
+                    changes,
+                    ResetMode.kNoResetSafeParameters,
+                    PersistMode.kNoPersistParameters
+                ) ==
+                REVLibError.kOk
+            );
+        });
+    }
+
+    private static String key(String device, SparkBase motor) {
+        return device.replace(' ', '_') + "." + motor.getDeviceId();
+    }
+
+    private static String fingerprint(SparkBase motor, SparkBaseConfig config) {
+        CRC32 crc = new CRC32();
+        crc.update(config.flatten().getBytes(StandardCharsets.UTF_8));
+        // a firmware update can change what the stored parameters mean
+        return (
+            Long.toHexString(crc.getValue()) +
+            "-" +
+            Integer.toHexString(motor.getFirmwareVersion())
+        );
+    }
+
+    /**
+     * @return the inversion, soft limits and current limit the controller
+     *     reports, or an empty string if they cannot be read
+     */
+    private static String readBack(SparkBase motor) {
+        SparkBaseConfigAccessor accessor;
+        if (motor instanceof SparkMax max) {
+            accessor = max.configAccessor;
+        } else if (motor instanceof SparkFlex flex) {
+            accessor = flex.configAccessor;
+        } else {
+            return "";
+        }
+        SoftLimitConfigAccessor softLimit = accessor.softLimit;
+        return (
+            accessor.getInverted() +
+            "," +
+            softLimit.getForwardSoftLimitEnabled() +
+            "," +
+            softLimit.getForwardSoftLimit() +
+            "," +
+            softLimit.getReverseSoftLimitEnabled() +
+            "," +
+            softLimit.getReverseSoftLimit() +
+            "," +
+            accessor.getSmartCurrentLimit()
+        );
+    }
+
+    private static synchronized String get(String key) {
+        return fingerprints.getProperty(key);
+    }
+
+    private static synchronized void put(String key, String fingerprint) {
+        if (fingerprint == null) {
+            if (fingerprints.remove(key) == null) {
+                return;
+            }
+        } else {
+            fingerprints.setProperty(key, fingerprint);
+        }
+        if (RobotBase.isSimulation()) {
+            return;
+        }
+        try (OutputStream output = new FileOutputStream(file)) {
+            fingerprints.store(output, "Spark config fingerprints");
+        } catch (IOException e) {
+            // the configs are still applied, they are just sent again next boot
+            DriverStation.reportWarning(
+                "Failed to write Spark config fingerprints: " + file,
+                false
+            );
+        }
+    }
+
+    private static Properties load() {
+        Properties properties = new Properties();
+        if (RobotBase.isReal() && file.isFile()) {
+            try (InputStream input = new FileInputStream(file)) {
+                properties.load(input);
+            } catch (IOException | IllegalArgumentException e) {
+                properties.clear();
+            }
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,235 @@
+package frc.lib;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * a state machine compiled into flat transition tables. every state has an
+ * optional command that runs while the machine is in it, and each cycle only
+ * the guards leaving the current state are checked, in the order they were
+ * added. at most one transition is taken per cycle
+ *
+ * <pre>
+ * new StateMachine.Builder()
+ *     .state("idle", feeder.new ChangeState(FeederState.IDLE))
+ *     .state("intake", feeder.new ChangeState(FeederState.INTAKE))
+ *     .state("hold")
+ *     .transition("idle", "intake", intakeTrigger)
+ *     .transition("intake", "hold", beamBreak)
+ *     .transition("hold", "idle", () -> !beamBreak.getAsBoolean())
+ *     .build();
+ * </pre>
+ */
+public class StateMachine {
+
+    public static class Builder {
+
+        private final List<String> stateNames = new ArrayList<>();
+        private final List<Command> stateCommands = new ArrayList<>();
+        private final Map<String, Integer> stateIndexes = new HashMap<>();
+        private final List<Transition> transitions = new ArrayList<>();
+        private String initialState;
+
+        public Builder() {}
+
+        /** adds a state, the first state added is the initial state */
+        public Builder state(String name, Command command) {
+            if (stateIndexes.containsKey(name)) {
+                throw new IllegalStateException(
+                    "StateMachine state already exists: " + name
+                );
+            }
+            stateIndexes.put(name, stateNames.size());
+            stateNames.add(name);
+            stateCommands.add(command);
+            return this;
+        }
+
+        public Builder state(String name) {
+            return state(name, null);
+        }
+
+        public Builder initial(String name) {
+            initialState = name;
+            return this;
+        }
+
+        public Builder transition(
+            String from,
+            String to,
+            BooleanSupplier guard
+        ) {
+            if (guard == null) {
+                throw new IllegalArgumentException(
+                    "StateMachine guard cannot be null"
+                );
+            }
+            transitions.add(new Transition(from, to, guard));
+            return this;
+        }
+
+        /** adds the same transition from every listed state */
+        public Builder transition(
+            String[] from,
+            String to,
+            BooleanSupplier guard
+        ) {
+            for (String state : from) {
+                transition(state, to, guard);
+            }
+            return this;
+        }
+
+        public StateMachine build() {
+            if (stateNames.isEmpty()) {
+                throw new IllegalStateException("StateMachine has no states");
+            }
+            return new StateMachine(this);
+        }
+
+        private int resolve(String name) {
+            Integer index = stateIndexes.get(name);
+            if (index == null) {
+                throw new IllegalStateException(
+                    "StateMachine state does not exist: " + name
+                );
+            }
+            return index;
+        }
+    }
+
+    private record Transition(String from, String to, BooleanSupplier guard) {}
+
+    private final String[] stateNames;
+    private final Command[] stateCommands;
+
+    // the transitions leaving state s are transitionStarts[s] up to
+    // transitionStarts[s + 1] in the guard and target tables
+    private final int[] transitionStarts;
+    private final BooleanSupplier[] guards;
+    private final int[] targets;
+
+    private int state;
+    private long transitionCount;
+
+    private StateMachine(Builder builder) {
+        int stateCount = builder.stateNames.size();
+        stateNames = builder.stateNames.toArray(new String[0]);
+        stateCommands = builder.stateCommands.toArray(new Command[0]);
+
+        // counting sort the transitions by source state, keeping their order
+        int transitionTotal = builder.transitions.size();
+        int[] sources = new int[transitionTotal];
+        int[] destinations = new int[transitionTotal];
+        transitionStarts = new int[stateCount + 1];
+        for (int i = 0; i < transitionTotal; i++) {
+            Transition transition = builder.transitions.get(i);
+            sources[i] = builder.resolve(transition.from);
+            destinations[i] = builder.resolve(transition.to);
+            transitionStarts[sources[i] + 1]++;
+        }
+        for (int i = 0; i < stateCount; i++) {
+            transitionStarts[i + 1] += transitionStarts[i];
+        }
+        guards = new BooleanSupplier[transitionTotal];
+        targets = new int[transitionTotal];
+        int[] fill = new int[stateCount];
+        for (int i = 0; i < transitionTotal; i++) {
+            int slot = transitionStarts[sources[i]] + fill[sources[i]]++;
+            guards[slot] = builder.transitions.get(i).guard;
+            targets[slot] = destinations[i];
+        }
+
+        state = builder.initialState != null
+            ? builder.resolve(builder.initialState)
+            : 0;
+        checkReachability();
+
+        if (stateCommands[state] != null) {
+            CommandScheduler.getInstance().schedule(stateCommands[state]);
+        }
+        CommandScheduler.getInstance().getDefaultButtonLoop().bind(this::poll);
+    }
+
+    private void checkReachability() {
+        boolean[] reached = new boolean[stateNames.length];
+        int[] queue = new int[stateNames.length];
+        int head = 0, tail = 0;
+        reached[state] = true;
+        queue[tail++] = state;
+        while (head < tail) {
+            int current = queue[head++];
+            for (
+                int i = transitionStarts[current];
+                i < transitionStarts[current + 1];
+                i++
+            ) {
+                if (!reached[targets[i]]) {
+                    reached[targets[i]] = true;
+                    queue[tail++] = targets[i];
+                }
+            }
+        }
+        if (tail == stateNames.length) {
+            return;
+        }
+        StringBuilder unreachable = new StringBuilder();
+        for (int i = 0; i < stateNames.length; i++) {
+            if (!reached[i]) {
+                if (unreachable.length() > 0) {
+                    unreachable.append(", ");
+                }
+                unreachable.append(stateNames[i]);
+            }
+        }
+        throw new IllegalStateException(
+            "StateMachine states are unreachable from " +
+            stateNames[state] +
+            ": " +
+            unreachable
+        );
+    }
+
+    private void poll() {
+        for (
+            int i = transitionStarts[state];
+            i < transitionStarts[state + 1];
+            i++
+        ) {
+            if (guards[i].getAsBoolean()) {
+                enter(targets[i]);
+                return;
+            }
+        }
+    }
+
+    private void enter(int nextState) {
+        Command oldCommand = stateCommands[state];
+        Command newCommand = stateCommands[nextState];
+        state = nextState;
+        transitionCount++;
+        if (oldCommand != newCommand && oldCommand != null) {
+            CommandScheduler.getInstance().cancel(oldCommand);
+        }
+        if (newCommand != null && !newCommand.isScheduled()) {
+            CommandScheduler.getInstance().schedule(newCommand);
+        }
+    }
+
+    public String getState() {
+        return stateNames[state];
+    }
+
+    public boolean isIn(String name) {
+        return stateNames[state].equals(name);
+    }
+
+    public long getTransitionCount() {
+        return transitionCount;
+    }
+}
@@ -0,0 +1,97 @@
+package frc.lib;
+
+/**
+ * a precomputed mapping from a stick position to one or more outputs. the
+ * mapping is sampled on a square grid over [-1, 1] on both axes when the table
+ * is built, and looked up with bilinear interpolation, so evaluating it costs
+ * the same no matter how expensive the original mapping is
+ */
+public final class StickTable {
+
+    /** writes the outputs for a stick position */
+    @FunctionalInterface
+    public interface Mapping {
+        void map(double x, double y, double[] output);
+    }
+
+    private final int size;
+    private final int outputCount;
+    private final double cellsPerUnit;
+    // row major by y, then x, then output
+    private final float[] table;
+
+    /** @param size number of grid points along each axis, at least 2 */
+    public StickTable(int size, int outputCount, Mapping mapping) {
+        if (size < 2) {
+            throw new IllegalArgumentException(
+                "StickTable needs at least 2 points per axis"
+            );
+        }
+        this.size = size;
+        this.outputCount = outputCount;
+        this.cellsPerUnit = (size - 1) / 2.0;
+        this.table = new float[size * size * outputCount];
+
+        double[] output = new double[outputCount];
+        for (int row = 0; row < size; row++) {
+            double y = row / cellsPerUnit - 1;
+            for (int column = 0; column < size; column++) {
+                double x = column / cellsPerUnit - 1;
+                mapping.map(x, y, output);
+                int offset = (row * size + column) * outputCount;
+                for (int i = 0; i < outputCount; i++) {
+                    table[offset + i] = (float) output[i];
+                }
+            }
+        }
+    }
+
+    /** writes the interpolated outputs for a stick position */
+    public void sample(double x, double y, double[] output) {
+        double gridX = (Math.max(-1, Math.min(1, x)) + 1) * cellsPerUnit;
+        double gridY = (Math.max(-1, Math.min(1, y)) + 1) * cellsPerUnit;
+        int column = Math.min((int) gridX, size - 2);
+        int row = Math.min((int) gridY, size - 2);
+        double fractionX = gridX - column;
+        double fractionY = gridY - row;
+
+        int bottomLeft = (row * size + column) * outputCount;
+        int topLeft = bottomLeft + size * outputCount;
+        for (int i = 0; i < outputCount; i++) {
+            double bottom =
+                table[bottomLeft + i] +
+                (table[bottomLeft + outputCount + i] - table[bottomLeft + i]) *
+                fractionX;
+            double top =
+                table[topLeft + i] +
+                (table[topLeft + outputCount + i] - table[topLeft + i]) *
+                fractionX;
+            output[i] = bottom + (top - bottom) * fractionY;
+        }
+    }
+
+    /**
+     * @return the largest difference between the table and the mapping at
+     *     the center of every cell, where interpolation error is the worst
+     */
+    public double maxError(Mapping mapping) {
+        double[] expected = new double[outputCount];
+        double[] actual = new double[outputCount];
+        double maxError = 0;
+        for (int row = 0; row < size - 1; row++) {
+            double y = (row + 0.5) / cellsPerUnit - 1;
+            for (int column = 0; column < size - 1; column++) {
+                double x = (column + 0.5) / cellsPerUnit - 1;
+                mapping.map(x, y, expected);
+                sample(x, y, actual);
+                for (int i = 0; i < outputCount; i++) {
+                    maxError = Math.max(
+                        maxError,
+                        Math.abs(expected[i] - actual[i])
+                    );
+                }
+            }
+        }
+        return maxError;
+    }
+}
@@ -0,0 +1,142 @@
+package frc.lib;
+
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+
+/**
+ * shared hashed timer wheel. the clock is read once per cycle and only the
+ * slots the cycle passes over are visited, so a pending {@link Timeout} costs
+ * nothing while it waits
+ */
+public final class TimerWheel {
+
+    private static final double kTickSeconds = 0.02;
+    // one revolution covers a little over 5 seconds
+    private static final int kSlotCount = 256;
+    private static final int kSlotMask = kSlotCount - 1;
+
+    // heads of the doubly linked list of timeouts in each slot
+    private static final Timeout[] slots = new Timeout[kSlotCount];
+    private static long cursorTick = Long.MIN_VALUE;
+    private static double now = Double.NEGATIVE_INFINITY;
+
+    @SuppressWarnings("unused")
+    private static final TimerWheel instance = new TimerWheel();
+
+    private TimerWheel() {
+        new SubsystemBase() {
+            @Override
+            public void periodic() {
+                advance(Clock.getTime());
+            }
+        };
+    }
+
+    /**
+     * a reusable deadline. a timeout expires on the first cycle after its
+     * deadline has passed, and can be scheduled again once it has expired or
+     * been cancelled
+     */
+    public static final class Timeout {
+
+        private double deadlineSeconds;
+        private boolean scheduled;
+        private boolean expired;
+
+        private int slot;
+        private Timeout previous, next;
+
+        public Timeout() {}
+
+        /** schedules the timeout, replacing any deadline it already had */
+        public void schedule(double deadlineSeconds) {
+            TimerWheel.unlink(this);
+            this.deadlineSeconds = deadlineSeconds;
+            this.expired = false;
+            TimerWheel.link(this);
+        }
+
+        public void cancel() {
+            TimerWheel.unlink(this);
+            expired = false;
+        }
+
+        public boolean isScheduled() {
+            return scheduled;
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+
+        public double getDeadline() {
+            return deadlineSeconds;
+        }
+    }
+
+    /** @return the time of the last cycle the wheel advanced to */
+    public static double getTime() {
+        return now;
+    }
+
+    /** expires every timeout whose deadline is before the given time */
+    static void advance(double timeSeconds) {
+        now = timeSeconds;
+        long nowTick = toTick(timeSeconds);
+        if (cursorTick == Long.MIN_VALUE) {
+            cursorTick = nowTick;
+        }
+        long visitedTicks = Math.min(nowTick - cursorTick + 1, kSlotCount);
+        for (long i = 0; i < visitedTicks; i++) {
+            expireSlot((int) ((nowTick - i) & kSlotMask), timeSeconds);
+        }
+        // revisit the current tick next cycle, it may still hold timeouts due
+        // later in the same tick
+        cursorTick = nowTick;
+    }
+
+    private static void expireSlot(int slot, double timeSeconds) {
+        Timeout timeout = slots[slot];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.deadlineSeconds < timeSeconds) {
+                unlink(timeout);
+                timeout.expired = true;
+            }
+            timeout = next;
+        }
+    }
+
+    private static void link(Timeout timeout) {
+        long tick = Math.max(toTick(timeout.deadlineSeconds), cursorTick);
+        int slot = (int) (tick & kSlotMask);
+        timeout.slot = slot;
+        timeout.previous = null;
+        timeout.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].previous = timeout;
+        }
+        slots[slot] = timeout;
+        timeout.scheduled = true;
+    }
+
+    private static void unlink(Timeout timeout) {
+        if (!timeout.scheduled) {
+            return;
+        }
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.scheduled = false;
+    }
+
+    private static long toTick(double timeSeconds) {
+        return (long) Math.floor(timeSeconds / kTickSeconds);
+    }
+}
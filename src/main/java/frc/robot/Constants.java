@@ -10,6 +10,8 @@ import edu.wpi.first.math.controller.ProfiledPIDController;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.GenericHID.RumbleType;
+import frc.lib.HIDRumble.RumblePattern;
 
 /**
  * The Constants class provides a convenient place for teams to hold robot-wide
@@ -28,6 +30,8 @@ public final class Constants {
     public static class OperatorConstants {
 
         public static final int kDriverControllerPort = 0;
+        // deploy/orchestrator/auto.orch
+        public static final String kAutoScript = "auto";
     }
 
     public static class ArcadeDriveConstants {
@@ -35,6 +39,12 @@ public final class Constants {
         public static final double kTranslationBufferAngle = Units.degreesToRadians(15);
         public static final double kRotationBufferAngle = Units.degreesToRadians(15);
         public static final double kInputDeadzone = 0.3;
+
+        // precompute the mapping instead of evaluating it every cycle
+        public static final boolean kUseLookupTable = true;
+        public static final int kLookupTableSize = 65;
+        // falls back to the analytic mapping if the table is further off
+        public static final double kLookupTableTolerance = 0.05;
     }
 
     public static class DrivetrainConstants {
@@ -45,6 +55,20 @@ public final class Constants {
         public static final int kRightMotor2Id = 2;
 
         public static final double kSpeedScalar = 0.2;
+        // rate phoenix resends the last control request at, hz. every 20 ms, well inside the 50 ms control timeout
+        public static final double kControlUpdateFrequency = 50;
+
+        // not measured on this robot, odometry is disabled and the pose methods throw until all three are set:
+        // the wheel radius in meters, the motor to wheel gear ratio (motor rotations per wheel rotation) and the
+        // track width in meters, measured between the centers of the left and right wheels
+        public static final double kWheelRadius = Double.NaN;
+        public static final double kGearRatio = Double.NaN;
+        public static final double kTrackWidth = Double.NaN;
+        public static final double kMetersPerMotorRotation = (2 * Math.PI * kWheelRadius) / kGearRatio;
+
+        public static final double kOdometryFrequency = 250;
+        public static final int kOdometryBufferSize = 64;
+        public static final double kPoseHistorySeconds = 1.5;
     }
 
     public static class FeederConstants {
@@ -184,5 +208,11 @@ public final class Constants {
         public static final double kTurretTripStrength = 0.2;
         public static final double kTurretZeroStrength = 0.5;
         public static final double kHoodZeroStrength = 0.3;
+        // held for as long as the hood is zeroing
+        public static final RumblePattern kHoodZeroPattern = RumblePattern.constant(
+            RumbleType.kRightRumble,
+            kHoodZeroStrength,
+            RumblePattern.kSamplePeriod
+        ).looping();
     }
 }
@@ -47,7 +47,10 @@ public class Robot extends TimedRobot {
 
     /** This function is called once each time the robot enters Disabled mode. */
     @Override
-    public void disabledInit() {}
+    public void disabledInit() {
+        // pick up routines redeployed without restarting the robot program
+        m_robotContainer.reloadScripts();
+    }
 
     @Override
     public void disabledPeriodic() {}
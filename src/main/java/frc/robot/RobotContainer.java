@@ -11,10 +11,13 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
+import frc.lib.DeviceConfigurator;
 import frc.lib.FluentTrigger;
 import frc.lib.HIDRumble;
+import frc.lib.HIDRumble.RumbleHandle;
 import frc.lib.HIDRumble.RumbleRequest;
 import frc.lib.Orchestrator;
+import frc.lib.OrchestratorScript;
 import frc.robot.Constants.FeederConstants.FeederState;
 import frc.robot.Constants.OperatorConstants;
 import frc.robot.Constants.RumbleConstants;
@@ -53,6 +56,8 @@ public class RobotContainer {
         OperatorConstants.kDriverControllerPort
     );
 
+    private final RumbleHandle hoodZeroRumble = HIDRumble.channel(driverController, "hoodZero");
+
     private final ArcadeDrive drive = drivetrain.new ArcadeDrive(driverController);
     private final TurretPositionControl turnTurret = turret.new TurretPositionControl(driverController);
 
@@ -65,6 +70,22 @@ public class RobotContainer {
 
     private final Trigger hoodZeroTrigger = driverController.y();
 
+    // script commands are factories, each executor of a script creates its own instances
+    private final OrchestratorScript.Registry scriptRegistry = new OrchestratorScript.Registry()
+        .subsystem("shooter", shooter)
+        .subsystem("feeder", feeder)
+        .command("spinUp", () -> shooter.new ControlSpin(ShooterState.SHOOT))
+        .command("spinIdle", () -> shooter.new ControlSpin(ShooterState.IDLE))
+        .command("intake", () -> feeder.new ChangeState(FeederState.INTAKE))
+        .command("outtake", () -> feeder.new ChangeState(FeederState.OUTTAKE))
+        .command("feederIdle", () -> feeder.new ChangeState(FeederState.IDLE))
+        .command("hoodUp", () -> shooter.new AdjustHood(HoodState.UP))
+        .command("hoodDown", () -> shooter.new AdjustHood(HoodState.DOWN))
+        .action("stopMusic", () -> orchestra.stop())
+        .action("playMusic", () -> orchestra.play())
+        .action("zeroTurret", turnTurret::zeroTurret);
+    private final OrchestratorScript.Loader scriptLoader = new OrchestratorScript.Loader(scriptRegistry);
+
     /**
      * The container for the robot. Contains subsystems, OI devices, and commands.
      */
@@ -79,7 +100,14 @@ public class RobotContainer {
             orchestra.addInstrument(motor);
         }
 
-        orchestra.loadMusic(songPath);
+        DeviceConfigurator.submit("Orchestra", () -> orchestra.loadMusic(songPath).isOK());
+
+        scriptLoader.loadAllAsync();
+    }
+
+    /** reparses any Orchestrator scripts that changed on disk */
+    public void reloadScripts() {
+        scriptLoader.loadAllAsync();
     }
 
     /**
@@ -101,53 +129,55 @@ public class RobotContainer {
             .bind(hoodUpTrigger, shooter.new AdjustHood(HoodState.UP))
             .bind(hoodDownTrigger, shooter.new AdjustHood(HoodState.DOWN))
             .build();
+        // outtake is shared, so the shooter and feeder switch in the same pass
+        FluentTrigger.Group shooterFeederGroup = new FluentTrigger.Group();
         new FluentTrigger.Builder()
+            .group(shooterFeederGroup)
             .defaultCommand(shooter.new ControlSpin(ShooterState.IDLE))
             .bind(shootTrigger, shooter.new ControlSpin(ShooterState.SHOOT))
             .bind(outtakeTrigger, shooter.new ControlSpin(ShooterState.REVERSE))
             .build();
         new FluentTrigger.Builder()
+            .group(shooterFeederGroup)
             .defaultCommand(feeder.new ChangeState(FeederState.IDLE))
             .bind(intakeTrigger, feeder.new ChangeState(FeederState.INTAKE))
             .bind(outtakeTrigger, feeder.new ChangeState(FeederState.OUTTAKE))
             .build();
-        turretZeroTrigger.whileTrue(
-            new Orchestrator()
-                .run(() -> orchestra.stop())
-                .yield(3)
-                .run(() -> orchestra.play())
-                .run(turnTurret::zeroTurret)
-                .run(() ->
-                    HIDRumble.rumble(
-                        driverController,
-                        new RumbleRequest(RumbleType.kLeftRumble, RumbleConstants.kTurretZeroStrength, 0.15, 2)
-                    )
+        Orchestrator.Program turretZeroRoutine = new Orchestrator()
+            .run(() -> orchestra.stop())
+            .yield(3)
+            .run(() -> orchestra.play())
+            .run(turnTurret::zeroTurret)
+            .run(() ->
+                HIDRumble.rumble(
+                    driverController,
+                    new RumbleRequest(RumbleType.kLeftRumble, RumbleConstants.kTurretZeroStrength, 0.15, 2)
                 )
-        );
-        hoodZeroTrigger.whileTrue(
-            new Orchestrator()
-                .run(() -> orchestra.stop())
-                .yield(3)
-                .run(() -> orchestra.play())
-                .require(shooter)
-                .command(shooter.new AdjustHood(HoodState.DOWN_SLOW))
-                .run(() -> {
-                    shooter.enableHoodReverseSoftLimit(false);
-                    HIDRumble.rumble(
-                        driverController,
-                        new RumbleRequest(RumbleType.kLeftRumble, RumbleConstants.kTurretZeroStrength, 0.15, 2)
-                    );
-                })
-                .repeat(() ->
-                    HIDRumble.rumble(
-                        driverController,
-                        new RumbleRequest(RumbleType.kRightRumble, RumbleConstants.kHoodZeroStrength, 2)
-                    )
-                )
-                .onexit(interrupted -> shooter.enableHoodReverseSoftLimit(true))
-                .yield(5)
-                .exit()
-        );
+            )
+            .build();
+        Orchestrator.Program hoodZeroRoutine = new Orchestrator()
+            .run(() -> orchestra.stop())
+            .yield(3)
+            .run(() -> orchestra.play())
+            .require(shooter)
+            .command(shooter.new AdjustHood(HoodState.DOWN_SLOW))
+            .run(() -> {
+                shooter.enableHoodReverseSoftLimit(false);
+                HIDRumble.rumble(
+                    driverController,
+                    new RumbleRequest(RumbleType.kLeftRumble, RumbleConstants.kTurretZeroStrength, 0.15, 2)
+                );
+            })
+            .run(() -> hoodZeroRumble.play(RumbleConstants.kHoodZeroPattern, 2))
+            .onexit(interrupted -> {
+                shooter.enableHoodReverseSoftLimit(true);
+                hoodZeroRumble.stop();
+            })
+            .yield(5)
+            .exit()
+            .build();
+        turretZeroTrigger.whileTrue(turretZeroRoutine.executor());
+        hoodZeroTrigger.whileTrue(hoodZeroRoutine.executor());
     }
 
     /**
@@ -156,6 +186,9 @@ public class RobotContainer {
      * @return the command to run in autonomous
      */
     public Command getAutonomousCommand() {
+        if (scriptLoader.get(OperatorConstants.kAutoScript) != null) {
+            return scriptLoader.launch(OperatorConstants.kAutoScript);
+        }
         // An example command will be run in autonomous
         return Commands.print("No autonomous command configured");
     }
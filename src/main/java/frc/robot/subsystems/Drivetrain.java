@@ -1,17 +1,35 @@
 package frc.robot.subsystems;
 
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.MotorOutputConfigs;
+import com.ctre.phoenix6.controls.DutyCycleOut;
+import com.ctre.phoenix6.controls.Follower;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.InvertedValue;
+import com.ctre.phoenix6.signals.MotorAlignmentValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import edu.wpi.first.math.kinematics.DifferentialDriveOdometry;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.units.measure.Angle;
+import edu.wpi.first.units.measure.AngularVelocity;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
+import frc.lib.Clock;
+import frc.lib.DeviceConfigurator;
+import frc.lib.SampleRing;
+import frc.lib.StickTable;
 import frc.robot.Constants;
 import frc.robot.Constants.ArcadeDriveConstants;
 import frc.robot.Constants.DrivetrainConstants;
+import java.util.Optional;
 
 public class Drivetrain extends SubsystemBase {
 
@@ -24,38 +42,243 @@ public class Drivetrain extends SubsystemBase {
         var leftMotorConfig = new MotorOutputConfigs()
             .withInverted(InvertedValue.CounterClockwise_Positive)
             .withNeutralMode(NeutralModeValue.Brake);
-        leftMotor1.getConfigurator().apply(leftMotorConfig);
-        leftMotor2.getConfigurator().apply(leftMotorConfig);
+        DeviceConfigurator.submit(
+            "Drivetrain left 1",
+            () -> leftMotor1.getConfigurator().apply(leftMotorConfig).isOK()
+        );
+        DeviceConfigurator.submit(
+            "Drivetrain left 2",
+            () -> leftMotor2.getConfigurator().apply(leftMotorConfig).isOK()
+        );
 
         var rightMotorConfig = new MotorOutputConfigs()
             .withInverted(InvertedValue.Clockwise_Positive)
             .withNeutralMode(NeutralModeValue.Brake);
-        rightMotor1.getConfigurator().apply(rightMotorConfig);
-        rightMotor2.getConfigurator().apply(rightMotorConfig);
+        DeviceConfigurator.submit(
+            "Drivetrain right 1",
+            () -> rightMotor1.getConfigurator().apply(rightMotorConfig).isOK()
+        );
+        DeviceConfigurator.submit(
+            "Drivetrain right 2",
+            () -> rightMotor2.getConfigurator().apply(rightMotorConfig).isOK()
+        );
     }
 
-    public Drivetrain() {}
+    // requests are reused and only set when they change, phoenix resends the
+    // last one at the update frequency so the motors never time out
+    private final DutyCycleOut leftRequest = new DutyCycleOut(0).withUpdateFreqHz(
+        DrivetrainConstants.kControlUpdateFrequency
+    );
+    private final DutyCycleOut rightRequest = new DutyCycleOut(0).withUpdateFreqHz(
+        DrivetrainConstants.kControlUpdateFrequency
+    );
+    private final Follower leftFollowerRequest = new Follower(
+        DrivetrainConstants.kLeftMotor1Id,
+        MotorAlignmentValue.Aligned
+    ).withUpdateFreqHz(DrivetrainConstants.kControlUpdateFrequency);
+    private final Follower rightFollowerRequest = new Follower(
+        DrivetrainConstants.kRightMotor1Id,
+        MotorAlignmentValue.Aligned
+    ).withUpdateFreqHz(DrivetrainConstants.kControlUpdateFrequency);
+
+    private double lastLeftOutput = Double.NaN;
+    private double lastRightOutput = Double.NaN;
+    private boolean followersSet;
+
+    private long controlFrames;
+    private long windowStartFrames;
+    private double windowStartTime = Double.NaN;
+    private double controlFramesPerSecond;
+
+    private final StatusSignal<Angle> leftPosition = leftMotor1.getPosition();
+    private final StatusSignal<AngularVelocity> leftVelocity = leftMotor1.getVelocity();
+    private final StatusSignal<Angle> rightPosition = rightMotor1.getPosition();
+    private final StatusSignal<AngularVelocity> rightVelocity = rightMotor1.getVelocity();
+    private final BaseStatusSignal[] odometrySignals = { leftPosition, leftVelocity, rightPosition, rightVelocity };
+
+    // timestamp, left meters, right meters, written by the odometry thread
+    private final SampleRing odometrySamples = new SampleRing(DrivetrainConstants.kOdometryBufferSize, 3);
+    private final WheelOdometry odometry = new WheelOdometry(
+        DrivetrainConstants.kTrackWidth,
+        DrivetrainConstants.kPoseHistorySeconds
+    );
+    private final boolean odometryEnabled =
+        DrivetrainConstants.kWheelRadius > 0 &&
+        DrivetrainConstants.kGearRatio > 0 &&
+        DrivetrainConstants.kTrackWidth > 0;
+
+    public Drivetrain() {
+        if (!odometryEnabled) {
+            DriverStation.reportError(
+                "Drivetrain wheel radius, gear ratio or track width is not set, odometry is disabled",
+                false
+            );
+            return;
+        }
+        DeviceConfigurator.submit("Drivetrain odometry signals", () ->
+            BaseStatusSignal.setUpdateFrequencyForAll(DrivetrainConstants.kOdometryFrequency, odometrySignals).isOK()
+        );
+        Thread odometryThread = new Thread(this::runOdometry, "DrivetrainOdometry");
+        odometryThread.setDaemon(true);
+        odometryThread.start();
+    }
+
+    /**
+     * samples the wheel positions every time the motors publish them, which is
+     * much faster and steadier than the main loop
+     */
+    private void runOdometry() {
+        double[] sample = new double[3];
+        double timeoutSeconds = 2.0 / DrivetrainConstants.kOdometryFrequency;
+        while (true) {
+            StatusCode status = BaseStatusSignal.waitForAll(timeoutSeconds, odometrySignals);
+            if (!status.isOK()) {
+                try {
+                    Thread.sleep((long) (timeoutSeconds * 1000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            sample[0] = Clock.getTime() - leftPosition.getTimestamp().getLatency();
+            sample[1] =
+                BaseStatusSignal.getLatencyCompensatedValueAsDouble(leftPosition, leftVelocity) *
+                DrivetrainConstants.kMetersPerMotorRotation;
+            sample[2] =
+                BaseStatusSignal.getLatencyCompensatedValueAsDouble(rightPosition, rightVelocity) *
+                DrivetrainConstants.kMetersPerMotorRotation;
+            odometrySamples.offer(sample);
+        }
+    }
+
+    @Override
+    public void periodic() {
+        odometry.drain(odometrySamples);
+
+        double now = Clock.getTime();
+        if (Double.isNaN(windowStartTime)) {
+            windowStartTime = now;
+        } else if (now - windowStartTime >= 1) {
+            controlFramesPerSecond = (controlFrames - windowStartFrames) / (now - windowStartTime);
+            windowStartFrames = controlFrames;
+            windowStartTime = now;
+        }
+    }
 
     public TalonFX[] getMotors() {
         return new TalonFX[] { leftMotor1, leftMotor2, rightMotor1, rightMotor2 };
     }
 
+    /** tracks the pose from wheel distance samples and keeps a short history of it for latency compensation */
+    static final class WheelOdometry {
+
+        private final double trackWidth;
+        private final DifferentialDriveOdometry odometry = new DifferentialDriveOdometry(Rotation2d.kZero, 0, 0);
+        private final TimeInterpolatableBuffer<Pose2d> poseHistory;
+        private final double[] sample = new double[3];
+        private boolean initialized;
+        private double lastLeftMeters, lastRightMeters;
+
+        WheelOdometry(double trackWidth, double historySeconds) {
+            this.trackWidth = trackWidth;
+            poseHistory = TimeInterpolatableBuffer.createBuffer(historySeconds);
+        }
+
+        /** applies every timestamp, left meters, right meters sample waiting in the ring */
+        void drain(SampleRing samples) {
+            // the ring does not allocate, but odometry.update() and the pose history allocate a few objects per sample
+            while (samples.poll(sample)) {
+                update(sample[0], sample[1], sample[2]);
+            }
+        }
+
+        void update(double timestamp, double leftMeters, double rightMeters) {
+            lastLeftMeters = leftMeters;
+            lastRightMeters = rightMeters;
+            if (!initialized) {
+                odometry.resetPosition(getWheelHeading(), leftMeters, rightMeters, Pose2d.kZero);
+                initialized = true;
+            }
+            odometry.update(getWheelHeading(), leftMeters, rightMeters);
+            poseHistory.addSample(timestamp, odometry.getPoseMeters());
+        }
+
+        // there is no gyro, so the heading comes from the difference between the
+        // sides, and drifts with wheel slip
+        private Rotation2d getWheelHeading() {
+            return Rotation2d.fromRadians((lastRightMeters - lastLeftMeters) / trackWidth);
+        }
+
+        Pose2d getPose() {
+            return odometry.getPoseMeters();
+        }
+
+        Optional<Pose2d> getPoseAt(double timestamp) {
+            return poseHistory.getSample(timestamp);
+        }
+
+        void resetPose(Pose2d pose) {
+            odometry.resetPosition(getWheelHeading(), lastLeftMeters, lastRightMeters, pose);
+            poseHistory.clear();
+        }
+    }
+
+    public Pose2d getPose() {
+        requireOdometry();
+        return odometry.getPose();
+    }
+
+    /** @return the pose interpolated at a past timestamp, if it is still in the history */
+    public Optional<Pose2d> getPoseAt(double timestamp) {
+        requireOdometry();
+        return odometry.getPoseAt(timestamp);
+    }
+
+    public void resetPose(Pose2d pose) {
+        requireOdometry();
+        odometry.resetPose(pose);
+    }
+
+    private void requireOdometry() {
+        if (!odometryEnabled) {
+            throw new IllegalStateException("Drivetrain odometry is disabled until its geometry is measured");
+        }
+    }
+
+    /** @return drivetrain control requests set per second over the last second, not counting periodic resends */
+    public double getControlFramesPerSecond() {
+        return controlFramesPerSecond;
+    }
+
     public void drive(double leftSpeed, double rightSpeed) {
         leftSpeed = MathUtil.clamp(leftSpeed, -1, 1);
         rightSpeed = MathUtil.clamp(rightSpeed, -1, 1);
         leftSpeed *= DrivetrainConstants.kSpeedScalar;
         rightSpeed *= DrivetrainConstants.kSpeedScalar;
-        leftMotor1.set(leftSpeed);
-        leftMotor2.set(leftSpeed);
-        rightMotor1.set(rightSpeed);
-        rightMotor2.set(rightSpeed);
+        setOutputs(leftSpeed, rightSpeed);
     }
 
     public void stop() {
-        leftMotor1.stopMotor();
-        leftMotor2.stopMotor();
-        rightMotor1.stopMotor();
-        rightMotor2.stopMotor();
+        setOutputs(0, 0);
+    }
+
+    private void setOutputs(double leftOutput, double rightOutput) {
+        if (leftOutput != lastLeftOutput) {
+            leftMotor1.setControl(leftRequest.withOutput(leftOutput));
+            lastLeftOutput = leftOutput;
+            controlFrames++;
+        }
+        if (rightOutput != lastRightOutput) {
+            rightMotor1.setControl(rightRequest.withOutput(rightOutput));
+            lastRightOutput = rightOutput;
+            controlFrames++;
+        }
+        if (!followersSet) {
+            leftMotor2.setControl(leftFollowerRequest);
+            rightMotor2.setControl(rightFollowerRequest);
+            controlFrames += 2;
+            followersSet = true;
+        }
     }
 
     public class TankDrive extends Command {
@@ -78,69 +301,90 @@ public class Drivetrain extends SubsystemBase {
         }
     }
 
+    /** the analytic arcade mapping from stick position to left and right speeds */
+    static void arcadeMapping(double inputX, double inputY, double[] output) {
+        double forwardDirection = Math.signum(inputY);
+        double rawMagnitude = Math.min(1, Math.hypot(inputX, inputY));
+        double correctedMagnitude = MathUtil.applyDeadband(rawMagnitude, ArcadeDriveConstants.kInputDeadzone, 1);
+
+        // absolute angles
+        double absoluteAngleFromHorizontal = Math.atan2(Math.abs(inputY), Math.abs(inputX));
+        double absoluteAngleFromVertical = Math.abs(Units.degreesToRadians(90) - Math.abs(absoluteAngleFromHorizontal));
+
+        double leftDirection = 0,
+            rightDirection = 0;
+        if (rawMagnitude >= ArcadeDriveConstants.kInputDeadzone) {
+            double rotationAlpha;
+            if (absoluteAngleFromVertical <= ArcadeDriveConstants.kTranslationBufferAngle) {
+                rotationAlpha = forwardDirection;
+            } else if (absoluteAngleFromHorizontal <= ArcadeDriveConstants.kRotationBufferAngle) {
+                rotationAlpha = 0;
+            } else {
+                // range of analog motion that is outside of the buffer zones
+                double analogRange =
+                    Units.degreesToRadians(90) -
+                    (ArcadeDriveConstants.kRotationBufferAngle + ArcadeDriveConstants.kTranslationBufferAngle);
+                double relativeAngle = absoluteAngleFromHorizontal - ArcadeDriveConstants.kRotationBufferAngle;
+                rotationAlpha = MathUtil.clamp(forwardDirection * (relativeAngle / analogRange), -1, 1);
+            }
+
+            // get directions
+            // 90 to 0 degrees: lerp from (-1, -1) to (-1, 1)
+            // 0 to -90 degrees: lerp from (-1, 1) to (1, 1)
+            leftDirection = -1 + Math.max(0, rotationAlpha * 2);
+            leftDirection = MathUtil.clamp(leftDirection, -1, 1);
+            rightDirection = -1 + ((rotationAlpha + 1) * 2);
+            rightDirection = MathUtil.clamp(rightDirection, -1, 1);
+
+            // reverse inputs if the input is leftward
+            if (inputX < 0) {
+                double temp = leftDirection;
+                leftDirection = rightDirection;
+                rightDirection = temp;
+            }
+        }
+
+        // get speeds based off direction and input magnitude
+        output[0] = MathUtil.clamp(leftDirection * correctedMagnitude, -1, 1);
+        output[1] = MathUtil.clamp(rightDirection * correctedMagnitude, -1, 1);
+    }
+
     public class ArcadeDrive extends Command {
 
         private CommandXboxController controller;
+        // null when the analytic mapping is used
+        private final StickTable table;
+        private final double[] speeds = new double[2];
 
         public ArcadeDrive(CommandXboxController controller) {
             this.controller = controller;
+            this.table = ArcadeDriveConstants.kUseLookupTable ? buildTable() : null;
             addRequirements(Drivetrain.this);
         }
 
+        private StickTable buildTable() {
+            StickTable table = new StickTable(ArcadeDriveConstants.kLookupTableSize, 2, Drivetrain::arcadeMapping);
+            double error = table.maxError(Drivetrain::arcadeMapping);
+            if (error > ArcadeDriveConstants.kLookupTableTolerance) {
+                DriverStation.reportWarning(
+                    "ArcadeDrive lookup table is off by up to " + error + ", using the analytic mapping",
+                    false
+                );
+                return null;
+            }
+            return table;
+        }
+
         @Override
         public void execute() {
             double inputX = controller.getLeftX();
             double inputY = controller.getLeftY();
-            double forwardDirection = Math.signum(inputY);
-            double rawMagnitude = Math.min(1, Math.hypot(inputX, inputY));
-            double correctedMagnitude = MathUtil.applyDeadband(rawMagnitude, ArcadeDriveConstants.kInputDeadzone, 1);
-
-            // absolute angles
-            double absoluteAngleFromHorizontal = Math.atan2(Math.abs(inputY), Math.abs(inputX));
-            double absoluteAngleFromVertical = Math.abs(
-                Units.degreesToRadians(90) - Math.abs(absoluteAngleFromHorizontal)
-            );
-
-            double leftDirection = 0,
-                rightDirection = 0;
-            if (rawMagnitude >= ArcadeDriveConstants.kInputDeadzone) {
-                double rotationAlpha;
-                if (absoluteAngleFromVertical <= ArcadeDriveConstants.kTranslationBufferAngle) {
-                    rotationAlpha = forwardDirection;
-                } else if (absoluteAngleFromHorizontal <= ArcadeDriveConstants.kRotationBufferAngle) {
-                    rotationAlpha = 0;
-                } else {
-                    // range of analog motion that is outside of the buffer zones
-                    double analogRange =
-                        Units.degreesToRadians(90) -
-                        (ArcadeDriveConstants.kRotationBufferAngle + ArcadeDriveConstants.kTranslationBufferAngle);
-                    double relativeAngle = absoluteAngleFromHorizontal - ArcadeDriveConstants.kRotationBufferAngle;
-                    rotationAlpha = MathUtil.clamp(forwardDirection * (relativeAngle / analogRange), -1, 1);
-                }
-
-                // get directions
-                // 90 to 0 degrees: lerp from (-1, -1) to (-1, 1)
-                // 0 to -90 degrees: lerp from (-1, 1) to (1, 1)
-                leftDirection = -1 + Math.max(0, rotationAlpha * 2);
-                leftDirection = MathUtil.clamp(leftDirection, -1, 1);
-                rightDirection = -1 + ((rotationAlpha + 1) * 2);
-                rightDirection = MathUtil.clamp(rightDirection, -1, 1);
-
-                // reverse inputs if the input is leftward
-                if (inputX < 0) {
-                    double temp = leftDirection;
-                    leftDirection = rightDirection;
-                    rightDirection = temp;
-                }
+            if (table != null) {
+                table.sample(inputX, inputY, speeds);
+            } else {
+                arcadeMapping(inputX, inputY, speeds);
             }
-
-            // get speeds based off direction and input magnitude
-            double leftSpeed = leftDirection * correctedMagnitude;
-            leftSpeed = MathUtil.clamp(leftSpeed, -1, 1);
-            double rightSpeed = rightDirection * correctedMagnitude;
-            rightSpeed = MathUtil.clamp(rightSpeed, -1, 1);
-
-            Drivetrain.this.drive(leftSpeed, rightSpeed);
+            Drivetrain.this.drive(speeds[0], speeds[1]);
         }
 
         @Override
@@ -1,12 +1,11 @@
 package frc.robot.subsystems;
 
-import com.revrobotics.PersistMode;
-import com.revrobotics.ResetMode;
 import com.revrobotics.spark.SparkLowLevel.MotorType;
 import com.revrobotics.spark.SparkMax;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.SparkConfigStore;
 import frc.robot.Constants.FeederConstants;
 import frc.robot.Constants.FeederConstants.FeederState;
 
@@ -16,16 +15,8 @@ public class Feeder extends SubsystemBase {
     private final SparkMax rightMotor = new SparkMax(FeederConstants.kRightMotorId, MotorType.kBrushless);
 
     {
-        leftMotor.configure(
-            new SparkMaxConfig().inverted(false),
-            ResetMode.kNoResetSafeParameters,
-            PersistMode.kNoPersistParameters
-        );
-        rightMotor.configure(
-            new SparkMaxConfig().inverted(true),
-            ResetMode.kNoResetSafeParameters,
-            PersistMode.kNoPersistParameters
-        );
+        SparkConfigStore.configure("Feeder left", leftMotor, new SparkMaxConfig().inverted(false));
+        SparkConfigStore.configure("Feeder right", rightMotor, new SparkMaxConfig().inverted(true));
     }
 
     public Feeder() {}
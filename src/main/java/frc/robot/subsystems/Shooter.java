@@ -3,14 +3,14 @@ package frc.robot.subsystems;
 import static edu.wpi.first.units.Units.RPM;
 import static edu.wpi.first.units.Units.RotationsPerSecond;
 
-import com.revrobotics.PersistMode;
-import com.revrobotics.ResetMode;
 import com.revrobotics.spark.SparkLowLevel.MotorType;
 import com.revrobotics.spark.SparkMax;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import edu.wpi.first.units.measure.AngularVelocity;
+import edu.wpi.first.units.measure.MutAngularVelocity;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.SparkConfigStore;
 import frc.robot.Constants.ShooterConstants;
 import frc.robot.Constants.ShooterConstants.HoodState;
 import frc.robot.Constants.ShooterConstants.ShooterState;
@@ -30,29 +30,28 @@ public class Shooter extends SubsystemBase {
     );
 
     {
-        leftShooterMotor.configure(
-            new SparkMaxConfig().inverted(false),
-            ResetMode.kNoResetSafeParameters,
-            PersistMode.kNoPersistParameters
-        );
-        rightShooterMotor.configure(
-            new SparkMaxConfig().inverted(true),
-            ResetMode.kNoResetSafeParameters,
-            PersistMode.kNoPersistParameters
-        );
+        SparkConfigStore.configure("Shooter left", leftShooterMotor, new SparkMaxConfig().inverted(false));
+        SparkConfigStore.configure("Shooter right", rightShooterMotor, new SparkMaxConfig().inverted(true));
     }
 
     // one Neo 550
     private final SparkMax hoodMotor = new SparkMax(ShooterConstants.kHoodMotorId, MotorType.kBrushless);
 
     {
-        hoodMotor.configure(
-            ShooterConstants.kHoodMotorConfig,
-            ResetMode.kNoResetSafeParameters,
-            PersistMode.kNoPersistParameters
-        );
+        SparkConfigStore.configure("Shooter hood", hoodMotor, ShooterConstants.kHoodMotorConfig);
+    }
+
+    // partial configs for toggling the hood reverse soft limit at runtime
+    private final SparkMaxConfig hoodReverseSoftLimitEnabled = new SparkMaxConfig();
+    private final SparkMaxConfig hoodReverseSoftLimitDisabled = new SparkMaxConfig();
+
+    {
+        hoodReverseSoftLimitEnabled.softLimit.reverseSoftLimitEnabled(true);
+        hoodReverseSoftLimitDisabled.softLimit.reverseSoftLimitEnabled(false);
     }
 
+    private final MutAngularVelocity axleVelocity = RPM.mutable(0);
+
     public Shooter() {
         adjustHood(HoodState.IDLE.speed);
     }
@@ -90,10 +89,12 @@ public class Shooter extends SubsystemBase {
     }
 
     public void enableHoodReverseSoftLimit(boolean enabled) {
-        var reverseConfig = new SparkMaxConfig();
-        ShooterConstants.kHoodMotorConfig.apply(reverseConfig);
-        reverseConfig.softLimit.reverseSoftLimitEnabled(enabled);
-        hoodMotor.configure(reverseConfig, ResetMode.kNoResetSafeParameters, PersistMode.kNoPersistParameters);
+        // only the changed parameter is sent, queued behind the startup config
+        SparkConfigStore.update(
+            "Shooter hood",
+            hoodMotor,
+            enabled ? hoodReverseSoftLimitEnabled : hoodReverseSoftLimitDisabled
+        );
     }
 
     public boolean isShooterReady() {
@@ -104,16 +105,13 @@ public class Shooter extends SubsystemBase {
         return ShooterConstants.kShooterProfiledPIDController.atGoal();
     }
 
-    private AngularVelocity getAxleVelocity() {
-        return getLeftVelocity().plus(getRightVelocity()).div(2);
-    }
-
-    private AngularVelocity getLeftVelocity() {
-        return RPM.of(leftShooterMotor.getEncoder().getVelocity());
-    }
-
-    private AngularVelocity getRightVelocity() {
-        return RPM.of(rightShooterMotor.getEncoder().getVelocity());
+    /** @return a shared measure, overwritten on every call */
+    AngularVelocity getAxleVelocity() {
+        // averaged as raw rpm so the 20 ms loop does not allocate measures
+        return axleVelocity.mut_replace(
+            (leftShooterMotor.getEncoder().getVelocity() + rightShooterMotor.getEncoder().getVelocity()) / 2,
+            RPM
+        );
     }
 
     public class AdjustHood extends Command {
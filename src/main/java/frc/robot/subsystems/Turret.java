@@ -1,7 +1,5 @@
 package frc.robot.subsystems;
 
-import com.revrobotics.PersistMode;
-import com.revrobotics.ResetMode;
 import com.revrobotics.spark.SparkLowLevel.MotorType;
 import com.revrobotics.spark.SparkMax;
 import edu.wpi.first.math.util.Units;
@@ -10,7 +8,8 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import frc.lib.HIDRumble;
-import frc.lib.HIDRumble.RumbleRequest;
+import frc.lib.HIDRumble.RumbleHandle;
+import frc.lib.SparkConfigStore;
 import frc.robot.Constants;
 import frc.robot.Constants.RumbleConstants;
 import frc.robot.Constants.TurretConstants;
@@ -20,11 +19,7 @@ public class Turret extends SubsystemBase {
     private final SparkMax turretMotor = new SparkMax(Constants.TurretConstants.kTurretMotorId, MotorType.kBrushless);
 
     {
-        turretMotor.configure(
-            TurretConstants.kTurretMotorConfig,
-            ResetMode.kNoResetSafeParameters,
-            PersistMode.kNoPersistParameters
-        );
+        SparkConfigStore.configure("Turret", turretMotor, TurretConstants.kTurretMotorConfig);
     }
 
     public Turret() {}
@@ -32,6 +27,8 @@ public class Turret extends SubsystemBase {
     public class TurretPositionControl extends Command {
 
         private final CommandXboxController controller;
+        private final RumbleHandle turnRumble;
+        private final RumbleHandle tripRumble;
         private double turretSetpoint;
 
         private boolean previousTurretSetpointWithinRange;
@@ -39,6 +36,8 @@ public class Turret extends SubsystemBase {
 
         public TurretPositionControl(CommandXboxController controller) {
             this.controller = controller;
+            this.turnRumble = HIDRumble.channel(controller, "turretTurn");
+            this.tripRumble = HIDRumble.channel(controller, "turretTrip");
             addRequirements(Turret.this);
         }
 
@@ -77,20 +76,14 @@ public class Turret extends SubsystemBase {
                 // convert turret position to rotations
                 if (turretSetpointWithinRange) {
                     turretSetpoint = wantedTurretSetpoint;
-                    HIDRumble.rumble(
-                        controller,
-                        new RumbleRequest(RumbleType.kLeftRumble, RumbleConstants.kTurretTurnStrength, 0)
-                    );
+                    turnRumble.rumble(RumbleType.kLeftRumble, RumbleConstants.kTurretTurnStrength);
                 } else if (previousTurretSetpointWithinRange) {
                     if (previousWantedTurretSetpoint > 0) {
                         turretSetpoint = TurretConstants.kTurretAngleMaximum;
                     } else {
                         turretSetpoint = TurretConstants.kTurretAngleMinimum;
                     }
-                    HIDRumble.rumble(
-                        controller,
-                        new RumbleRequest(RumbleType.kRightRumble, RumbleConstants.kTurretTripStrength, 0.3, 0)
-                    );
+                    tripRumble.rumble(RumbleType.kRightRumble, RumbleConstants.kTurretTripStrength, 0.3, 0);
                 }
                 previousTurretSetpointWithinRange = turretSetpointWithinRange;
                 previousWantedTurretSetpoint = wantedTurretSetpoint;
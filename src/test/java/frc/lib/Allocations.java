@@ -0,0 +1,28 @@
+package frc.lib;
+
+import java.lang.management.ManagementFactory;
+
+/** counts the bytes the calling thread allocates */
+public final class Allocations {
+
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {}
+
+    /**
+     * runs the body to warm it up, then again while counting
+     *
+     * @return the bytes allocated by the counted runs
+     */
+    public static long measure(int warmupRuns, int runs, Runnable body) {
+        for (int i = 0; i < warmupRuns; i++) {
+            body.run();
+        }
+        long start = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < runs; i++) {
+            body.run();
+        }
+        return threads.getCurrentThreadAllocatedBytes() - start;
+    }
+}
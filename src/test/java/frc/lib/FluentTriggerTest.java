@@ -0,0 +1,131 @@
+package frc.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.button.Trigger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FluentTriggerTest {
+
+    private SimulationHarness harness;
+
+    @BeforeEach
+    void setUp() {
+        harness = new SimulationHarness();
+    }
+
+    @AfterEach
+    void tearDown() {
+        harness.close();
+        CommandScheduler.getInstance().getDefaultButtonLoop().clear();
+    }
+
+    /** records the cycle it was last initialized in */
+    private final class Recorder extends Command {
+
+        private long initializedCycle = -1;
+
+        @Override
+        public void initialize() {
+            // the harness counts a cycle once the scheduler run returns
+            initializedCycle = harness.getCycles();
+        }
+    }
+
+    @Test
+    void commandStartsInTheCycleItsTriggerChanged() {
+        boolean[] pressed = new boolean[1];
+        Recorder idle = new Recorder();
+        Recorder held = new Recorder();
+        new FluentTrigger.Builder()
+            .defaultCommand(idle)
+            .bind(new Trigger(() -> pressed[0]), held)
+            .build();
+        harness.step("settle", 0.1);
+        assertTrue(idle.isScheduled());
+
+        pressed[0] = true;
+        long pressCycle = harness.getCycles();
+        harness.cycle();
+        assertEquals(pressCycle, held.initializedCycle);
+        assertTrue(held.isScheduled());
+        assertFalse(idle.isScheduled());
+
+        pressed[0] = false;
+        long releaseCycle = harness.getCycles();
+        harness.cycle();
+        assertEquals(releaseCycle, idle.initializedCycle);
+        assertFalse(held.isScheduled());
+    }
+
+    @Test
+    void higherPriorityBindingPreemptsInTheSameCycle() {
+        boolean[] low = new boolean[1];
+        boolean[] high = new boolean[1];
+        Recorder lowCommand = new Recorder();
+        Recorder highCommand = new Recorder();
+        new FluentTrigger.Builder()
+            .bind(0, new Trigger(() -> low[0]), lowCommand)
+            .bind(1, new Trigger(() -> high[0]), highCommand)
+            .build();
+
+        low[0] = true;
+        harness.cycle();
+        assertTrue(lowCommand.isScheduled());
+
+        high[0] = true;
+        long pressCycle = harness.getCycles();
+        harness.cycle();
+        assertEquals(pressCycle, highCommand.initializedCycle);
+        assertFalse(lowCommand.isScheduled());
+
+        // releasing the higher binding falls back to the one still held
+        high[0] = false;
+        long releaseCycle = harness.getCycles();
+        harness.cycle();
+        assertEquals(releaseCycle, lowCommand.initializedCycle);
+        assertFalse(highCommand.isScheduled());
+    }
+
+    @Test
+    void groupOnlySwitchesMembersSubscribedToTheEdge() {
+        boolean[] shared = new boolean[1];
+        boolean[] other = new boolean[1];
+        Trigger sharedTrigger = new Trigger(() -> shared[0]);
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        Recorder unrelated = new Recorder();
+        FluentTrigger.Group group = new FluentTrigger.Group();
+        new FluentTrigger.Builder()
+            .group(group)
+            .bind(sharedTrigger, first)
+            .build();
+        new FluentTrigger.Builder()
+            .group(group)
+            .bind(sharedTrigger, second)
+            .build();
+        new FluentTrigger.Builder()
+            .group(group)
+            .bind(new Trigger(() -> other[0]), unrelated)
+            .build();
+
+        shared[0] = true;
+        long pressCycle = harness.getCycles();
+        harness.cycle();
+        assertEquals(pressCycle, first.initializedCycle);
+        assertEquals(pressCycle, second.initializedCycle);
+        assertFalse(unrelated.isScheduled());
+
+        other[0] = true;
+        harness.cycle();
+        assertTrue(unrelated.isScheduled());
+        assertTrue(first.isScheduled());
+        assertTrue(second.isScheduled());
+    }
+}
@@ -0,0 +1,110 @@
+package frc.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.GenericHID;
+import edu.wpi.first.wpilibj.GenericHID.RumbleType;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.GenericHIDSim;
+import frc.lib.HIDRumble.RumbleHandle;
+import frc.lib.HIDRumble.RumblePattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HIDRumbleTest {
+
+    private double time;
+    private long cycles;
+
+    @BeforeEach
+    void setUp() {
+        HAL.initialize(500, 0);
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setEnabled(true);
+        DriverStationSim.notifyNewData();
+        time = 0;
+        cycles = 0;
+        Clock.setSource(() -> time);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DriverStationSim.setEnabled(false);
+        DriverStationSim.notifyNewData();
+        Clock.useDefaultSource();
+    }
+
+    @Test
+    void channelsDoNotAllocateOnceRunning() {
+        GenericHID hid = new GenericHID(0);
+        RumbleHandle turn = HIDRumble.channel(hid, "turn");
+        RumbleHandle trip = HIDRumble.channel(hid, "trip");
+        RumblePattern pulses = RumblePattern.pulses(
+            RumbleType.kRightRumble,
+            1,
+            0.1,
+            0.1,
+            3
+        );
+
+        // what the turret and hood zero commands do, every cycle
+        Runnable cycle = () -> {
+            time += 0.02;
+            cycles++;
+            turn.rumble(RumbleType.kLeftRumble, 0.5);
+            if (cycles % 50 == 0) {
+                trip.play(pulses, 1);
+            }
+            if (cycles % 70 == 0) {
+                trip.rumble(RumbleType.kRightRumble, 0.8, 0.3, 0);
+            }
+            HIDRumble.update();
+        };
+        long bytes = Allocations.measure(10_000, 10_000, cycle);
+
+        assertEquals(0, bytes, "bytes allocated over 10000 cycles");
+        assertTrue(turn.isActive());
+    }
+
+    @Test
+    void patternFromAnotherThreadStartsAtItsFirstSample() throws Exception {
+        GenericHID hid = new GenericHID(1);
+        GenericHIDSim hidSim = new GenericHIDSim(hid);
+        RumbleHandle handle = HIDRumble.channel(hid, "pattern");
+        RumblePattern pattern = RumblePattern.of(
+            RumbleType.kLeftRumble,
+            time -> time == 0 ? 1 : 0.5,
+            0.1
+        );
+
+        Thread thread = new Thread(() -> handle.play(pattern, 0));
+        thread.start();
+        thread.join();
+        // drained and played in the same cycle
+        HIDRumble.update();
+        assertEquals(1, hidSim.getRumble(RumbleType.kLeftRumble), 1e-3);
+
+        HIDRumble.update();
+        assertEquals(0.5, hidSim.getRumble(RumbleType.kLeftRumble), 1e-3);
+    }
+
+    @Test
+    void channelsCannotBeCreatedOffTheMainThread() throws Exception {
+        GenericHID hid = new GenericHID(2);
+        Throwable[] thrown = new Throwable[1];
+        Thread thread = new Thread(() -> {
+            try {
+                HIDRumble.channel(hid, "offThread");
+            } catch (Throwable e) {
+                thrown[0] = e;
+            }
+        });
+        thread.start();
+        thread.join();
+        assertInstanceOf(IllegalStateException.class, thrown[0]);
+    }
+}
@@ -0,0 +1,94 @@
+package frc.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.InstantCommand;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OrchestratorTest {
+
+    private double time;
+    private long cycles;
+
+    @BeforeEach
+    void setUp() {
+        HAL.initialize(500, 0);
+        time = 0;
+        cycles = 0;
+        Clock.setSource(() -> time);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Clock.useDefaultSource();
+    }
+
+    /** what the scheduler does for the executor in one cycle */
+    private void cycle(Command executor) {
+        time += 0.02;
+        cycles++;
+        TimerWheel.advance(time);
+        executor.execute();
+    }
+
+    @Test
+    void labelLoopDoesNotAllocateOnceRunning() {
+        int[] repeats = new int[1];
+        int[] commands = new int[1];
+        Command executor = new Orchestrator()
+            .label("loop")
+            .repeat(() -> repeats[0]++)
+            .command(new InstantCommand(() -> commands[0]++))
+            .yield(() -> cycles % 3 == 0)
+            .yield(0.1)
+            .jump("loop")
+            .build()
+            .executor();
+        executor.initialize();
+
+        long bytes = Allocations.measure(10_000, 10_000, () -> cycle(executor));
+
+        assertEquals(0, bytes, "bytes allocated over 10000 cycles");
+        assertTrue(commands[0] > 1000, "the loop stopped going around");
+        assertTrue(repeats[0] > commands[0], "the repeat block stopped");
+    }
+
+    @Test
+    void commandBlockEndsItsRunningCommandBeforeRestartingIt() {
+        List<String> events = new ArrayList<>();
+        Command endless = new Command() {
+            @Override
+            public void initialize() {
+                events.add("initialize");
+            }
+
+            @Override
+            public void end(boolean interrupted) {
+                events.add(interrupted ? "interrupted" : "ended");
+            }
+        };
+        Command executor = new Orchestrator()
+            .label("loop")
+            .command(endless)
+            .yield(0.1)
+            .jump("loop")
+            .build()
+            .executor();
+        executor.initialize();
+        for (int i = 0; i < 10; i++) {
+            cycle(executor);
+        }
+
+        assertEquals(
+            List.of("initialize", "interrupted", "initialize"),
+            events.subList(0, 3)
+        );
+    }
+}
@@ -0,0 +1,92 @@
+package frc.lib;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.Commands;
+import org.junit.jupiter.api.Test;
+
+/**
+ * times the same routine as a compiled Orchestrator and as the WPILib command
+ * composition it replaces. the assertion is loose, it only catches the
+ * orchestrator path becoming much slower than the old one
+ */
+class OrchestratorTimingTest {
+
+    private static final double kWarmupSeconds = 100;
+    private static final double kMeasuredSeconds = 200;
+    private static final int kRounds = 3;
+    private static final double kMaxRatio = 2;
+
+    private long cycles;
+
+    private Command orchestrated(int[] runs) {
+        return new Orchestrator()
+            .label("loop")
+            .run(() -> runs[0]++)
+            .yield(() -> cycles % 3 == 0)
+            .yield(0.1)
+            .jump("loop")
+            .build()
+            .executor();
+    }
+
+    private Command composed(int[] runs) {
+        return Commands.repeatingSequence(
+            Commands.runOnce(() -> runs[0]++),
+            Commands.waitUntil(() -> cycles % 3 == 0),
+            Commands.waitSeconds(0.1)
+        );
+    }
+
+    /** @return wall nanoseconds spent running the routine */
+    private long time(Command routine, double seconds) {
+        try (SimulationHarness harness = new SimulationHarness()) {
+            harness.schedule(routine);
+            SimulationHarness.Step step = harness.step("run", () -> {
+                cycles++;
+                return false;
+            }, seconds);
+            return step.wallNanos();
+        }
+    }
+
+    @Test
+    void orchestratorIsNotSlowerThanTheComposition() {
+        int[] orchestratedRuns = new int[1];
+        int[] composedRuns = new int[1];
+        time(orchestrated(orchestratedRuns), kWarmupSeconds);
+        time(composed(composedRuns), kWarmupSeconds);
+
+        // the fastest round of each, so a pause in one round does not count
+        long orchestratedBest = Long.MAX_VALUE;
+        long composedBest = Long.MAX_VALUE;
+        for (int i = 0; i < kRounds; i++) {
+            orchestratedBest = Math.min(
+                orchestratedBest,
+                time(orchestrated(orchestratedRuns), kMeasuredSeconds)
+            );
+            composedBest = Math.min(
+                composedBest,
+                time(composed(composedRuns), kMeasuredSeconds)
+            );
+        }
+        long orchestratedNanos = orchestratedBest;
+        long composedNanos = composedBest;
+
+        assertTrue(
+            orchestratedRuns[0] > 1000 && composedRuns[0] > 1000,
+            "a routine stopped looping"
+        );
+        double ratio = (double) orchestratedNanos / composedNanos;
+        assertTrue(
+            ratio <= kMaxRatio,
+            () ->
+                "orchestrator took " +
+                orchestratedNanos / 1e6 +
+                " ms, the composition " +
+                composedNanos / 1e6 +
+                " ms"
+        );
+    }
+}
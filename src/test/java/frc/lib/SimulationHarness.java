@@ -0,0 +1,173 @@
+package frc.lib;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * runs the command scheduler on a virtual clock as fast as the cpu allows.
+ * {@link Clock} and the simulated FPGA timer both advance one period per
+ * cycle, so routines that yield for seconds finish in milliseconds
+ *
+ * <pre>
+ * try (SimulationHarness harness = new SimulationHarness()) {
+ *     harness.schedule(routine.executor());
+ *     harness.step("zero hood", () -> !executor.isScheduled(), 10);
+ *     System.out.println(harness.report());
+ * }
+ * </pre>
+ *
+ * <p>for JUnit tests. it initializes the HAL, pauses its timing, and enables
+ * the simulated driver station so commands and rumble run as in teleop
+ */
+public final class SimulationHarness implements AutoCloseable {
+
+    public static final double kDefaultPeriodSeconds = 0.02;
+
+    /** the result of one named step */
+    public record Step(
+        String name,
+        boolean completed,
+        long cycles,
+        double simulatedSeconds,
+        long wallNanos,
+        long maxCycleNanos
+    ) {}
+
+    private final double periodSeconds;
+    private final List<Step> steps = new ArrayList<>();
+
+    private double timeSeconds;
+    private long cycles;
+    private long lastCycleNanos;
+
+    public SimulationHarness() {
+        this(kDefaultPeriodSeconds);
+    }
+
+    public SimulationHarness(double periodSeconds) {
+        if (periodSeconds <= 0) {
+            throw new IllegalArgumentException(
+                "Simulation period must be positive"
+            );
+        }
+        this.periodSeconds = periodSeconds;
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+        timeSeconds = Clock.getTime();
+        Clock.setSource(() -> timeSeconds);
+        setEnabled(true);
+    }
+
+    public void setEnabled(boolean enabled) {
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.notifyNewData();
+    }
+
+    public double getTime() {
+        return timeSeconds;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public void schedule(Command command) {
+        CommandScheduler.getInstance().schedule(command);
+    }
+
+    /** advances the clock one period and runs the scheduler once */
+    public void cycle() {
+        timeSeconds += periodSeconds;
+        SimHooks.stepTiming(periodSeconds);
+        long start = System.nanoTime();
+        CommandScheduler.getInstance().run();
+        lastCycleNanos = System.nanoTime() - start;
+        cycles++;
+    }
+
+    /** runs cycles for the given simulated time */
+    public Step step(String name, double seconds) {
+        return step(name, () -> false, seconds);
+    }
+
+    /**
+     * runs cycles until the condition is true or the timeout passes, checking
+     * the condition after every cycle
+     */
+    public Step step(
+        String name,
+        BooleanSupplier condition,
+        double timeoutSeconds
+    ) {
+        long startCycles = cycles;
+        double startTime = timeSeconds;
+        long maxCycleNanos = 0;
+        boolean completed = false;
+        long start = System.nanoTime();
+        while (timeSeconds - startTime < timeoutSeconds) {
+            cycle();
+            maxCycleNanos = Math.max(maxCycleNanos, lastCycleNanos);
+            if (condition.getAsBoolean()) {
+                completed = true;
+                break;
+            }
+        }
+        Step step = new Step(
+            name,
+            completed,
+            cycles - startCycles,
+            timeSeconds - startTime,
+            System.nanoTime() - start,
+            maxCycleNanos
+        );
+        steps.add(step);
+        return step;
+    }
+
+    /** @return one line per step with its cycle count and timing */
+    public String report() {
+        StringBuilder builder = new StringBuilder();
+        for (Step step : steps) {
+            builder.append(
+                String.format(
+                    "%s: %s after %d cycles, %.3f s simulated, " +
+                    "%.3f ms wall, %.1f us max cycle%n",
+                    step.name,
+                    step.completed ? "completed" : "timed out",
+                    step.cycles,
+                    step.simulatedSeconds,
+                    step.wallNanos / 1e6,
+                    step.maxCycleNanos / 1e3
+                )
+            );
+        }
+        builder.append(
+            String.format(
+                "total: %d cycles, %.3f s simulated%n",
+                cycles,
+                timeSeconds
+            )
+        );
+        return builder.toString();
+    }
+
+    /** cancels every command, disables, and goes back to the robot clock */
+    @Override
+    public void close() {
+        CommandScheduler.getInstance().cancelAll();
+        setEnabled(false);
+        Clock.useDefaultSource();
+        SimHooks.resumeTiming();
+    }
+}
@@ -0,0 +1,53 @@
+package frc.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SimulationHarnessTest {
+
+    @Test
+    void yieldFinishesOnTheVirtualClock() {
+        try (SimulationHarness harness = new SimulationHarness()) {
+            int[] runs = new int[1];
+            Orchestrator routine = new Orchestrator()
+                .run(() -> runs[0]++)
+                .yield(5)
+                .run(() -> runs[0]++);
+            harness.schedule(routine);
+
+            SimulationHarness.Step step = harness.step(
+                "yield",
+                () -> !routine.isScheduled(),
+                10
+            );
+
+            assertTrue(step.completed());
+            assertEquals(2, runs[0]);
+            assertEquals(5, step.simulatedSeconds(), 0.1);
+            assertEquals(250, step.cycles(), 5);
+        }
+    }
+
+    @Test
+    void stepTimesOutWhenTheConditionNeverHolds() {
+        try (SimulationHarness harness = new SimulationHarness()) {
+            SimulationHarness.Step step = harness.step("idle", () -> false, 1);
+
+            assertFalse(step.completed());
+            assertEquals(50, step.cycles(), 1);
+            assertEquals(step.cycles(), harness.getCycles());
+            assertTrue(harness.report().contains("idle: timed out"));
+        }
+    }
+
+    @Test
+    void closeRestoresTheRobotClock() {
+        SimulationHarness harness = new SimulationHarness();
+        assertFalse(Clock.isDefaultSource());
+        harness.close();
+        assertTrue(Clock.isDefaultSource());
+    }
+}
@@ -0,0 +1,112 @@
+package frc.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StateMachineTest {
+
+    private SimulationHarness harness;
+
+    @BeforeEach
+    void setUp() {
+        harness = new SimulationHarness();
+    }
+
+    @AfterEach
+    void tearDown() {
+        harness.close();
+        CommandScheduler.getInstance().getDefaultButtonLoop().clear();
+    }
+
+    /** records the cycle it was last initialized in */
+    private final class Recorder extends Command {
+
+        private long initializedCycle = -1;
+
+        @Override
+        public void initialize() {
+            // the harness counts a cycle once the scheduler run returns
+            initializedCycle = harness.getCycles();
+        }
+    }
+
+    @Test
+    void transitionFiresInTheCycleItsGuardBecameTrue() {
+        boolean[] intake = new boolean[1];
+        Recorder idle = new Recorder();
+        Recorder intaking = new Recorder();
+        StateMachine machine = new StateMachine.Builder()
+            .state("idle", idle)
+            .state("intake", intaking)
+            .transition("idle", "intake", () -> intake[0])
+            .transition("intake", "idle", () -> !intake[0])
+            .build();
+        harness.step("settle", 0.1);
+        assertTrue(machine.isIn("idle"));
+        assertTrue(idle.isScheduled());
+
+        intake[0] = true;
+        long pressCycle = harness.getCycles();
+        harness.cycle();
+        assertTrue(machine.isIn("intake"));
+        assertEquals(pressCycle, intaking.initializedCycle);
+        assertFalse(idle.isScheduled());
+        assertEquals(1, machine.getTransitionCount());
+    }
+
+    @Test
+    void onlyTheCurrentStatesGuardsAreChecked() {
+        int[] idleChecks = new int[1];
+        int[] holdChecks = new int[1];
+        boolean[] intake = new boolean[1];
+        StateMachine machine = new StateMachine.Builder()
+            .state("idle")
+            .state("intake")
+            .state("hold")
+            .transition("idle", "intake", () -> {
+                idleChecks[0]++;
+                return intake[0];
+            })
+            .transition("intake", "hold", () -> false)
+            .transition("hold", "idle", () -> {
+                holdChecks[0]++;
+                return true;
+            })
+            .build();
+
+        harness.step("idle", 0.2);
+        assertEquals(harness.getCycles(), idleChecks[0]);
+
+        intake[0] = true;
+        harness.cycle();
+        int idleChecksBefore = idleChecks[0];
+        harness.step("intake", 0.2);
+        assertTrue(machine.isIn("intake"));
+        assertEquals(idleChecksBefore, idleChecks[0]);
+        assertEquals(0, holdChecks[0]);
+    }
+
+    @Test
+    void unreachableStateIsRejectedWhenBuilt() {
+        StateMachine.Builder builder = new StateMachine.Builder()
+            .state("idle")
+            .state("intake")
+            .state("orphan")
+            .transition("idle", "intake", () -> true)
+            .transition("intake", "idle", () -> true);
+
+        IllegalStateException thrown = assertThrows(
+            IllegalStateException.class,
+            builder::build
+        );
+        assertTrue(thrown.getMessage().contains("orphan"));
+    }
+}
@@ -0,0 +1,52 @@
+package frc.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class StickTableTest {
+
+    private static final double kFloatTolerance = 1e-6;
+
+    @Test
+    void bilinearMappingsAreReproducedEverywhere() {
+        StickTable.Mapping mapping = (x, y, output) -> {
+            output[0] = 0.5 * x - 0.25 * y;
+            output[1] = x * y;
+        };
+        StickTable table = new StickTable(9, 2, mapping);
+        double[] expected = new double[2];
+        double[] actual = new double[2];
+        Random random = new Random(4159);
+        for (int i = 0; i < 10_000; i++) {
+            double x = random.nextDouble() * 2 - 1;
+            double y = random.nextDouble() * 2 - 1;
+            mapping.map(x, y, expected);
+            table.sample(x, y, actual);
+            assertEquals(expected[0], actual[0], kFloatTolerance);
+            assertEquals(expected[1], actual[1], kFloatTolerance);
+        }
+        assertEquals(0, table.maxError(mapping), kFloatTolerance);
+    }
+
+    @Test
+    void positionsOutsideTheSquareAreClamped() {
+        StickTable table = new StickTable(5, 1, (x, y, output) -> {
+            output[0] = x + 2 * y;
+        });
+        double[] output = new double[1];
+        table.sample(3, -2, output);
+        assertEquals(-1, output[0], kFloatTolerance);
+        table.sample(-1.5, 1.5, output);
+        assertEquals(1, output[0], kFloatTolerance);
+    }
+
+    @Test
+    void tooSmallGridIsRejected() {
+        assertThrows(IllegalArgumentException.class, () ->
+            new StickTable(1, 1, (x, y, output) -> {})
+        );
+    }
+}
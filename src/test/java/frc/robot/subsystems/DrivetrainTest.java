@@ -0,0 +1,82 @@
+package frc.robot.subsystems;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import frc.lib.SampleRing;
+import frc.lib.StickTable;
+import frc.robot.Constants.ArcadeDriveConstants;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class DrivetrainTest {
+
+    @Test
+    void arcadeLookupTableStaysWithinTolerance() {
+        StickTable table = new StickTable(ArcadeDriveConstants.kLookupTableSize, 2, Drivetrain::arcadeMapping);
+        double[] expected = new double[2];
+        double[] actual = new double[2];
+        double maxError = table.maxError(Drivetrain::arcadeMapping);
+
+        // random stick positions, plus the axes and edges where the mapping has its kinks
+        Random random = new Random(4159);
+        for (int i = 0; i < 100_000; i++) {
+            double x = random.nextDouble() * 2 - 1;
+            double y = random.nextDouble() * 2 - 1;
+            if (i % 8 == 0) {
+                x = 0;
+            } else if (i % 8 == 1) {
+                y = 0;
+            } else if (i % 8 == 2) {
+                x = Math.copySign(1, x);
+            } else if (i % 8 == 3) {
+                y = Math.copySign(1, y);
+            }
+            Drivetrain.arcadeMapping(x, y, expected);
+            table.sample(x, y, actual);
+            maxError = Math.max(maxError, Math.abs(expected[0] - actual[0]));
+            maxError = Math.max(maxError, Math.abs(expected[1] - actual[1]));
+        }
+
+        assertTrue(
+            maxError <= ArcadeDriveConstants.kLookupTableTolerance,
+            "lookup table is off by " + maxError
+        );
+    }
+
+    @Test
+    void odometryInterpolatesSamplesDrainedFromTheRing() {
+        double trackWidth = 0.5;
+        SampleRing ring = new SampleRing(64, 3);
+        Drivetrain.WheelOdometry odometry = new Drivetrain.WheelOdometry(trackWidth, 1.5);
+        double[] sample = new double[3];
+
+        // 1 m/s straight for half a second, then turning in place at 1 rad/s, sampled at 250 hz and drained
+        // every 20 ms like periodic() does
+        double turnSpeed = trackWidth / 2;
+        for (int i = 0; i <= 250; i++) {
+            double time = i * 0.004;
+            sample[0] = time;
+            sample[1] = time <= 0.5 ? time : 0.5 - (time - 0.5) * turnSpeed;
+            sample[2] = time <= 0.5 ? time : 0.5 + (time - 0.5) * turnSpeed;
+            assertTrue(ring.offer(sample));
+            if (i % 5 == 0) {
+                odometry.drain(ring);
+            }
+        }
+
+        // halfway between the samples at 0.2 s and 0.204 s
+        Pose2d straight = odometry.getPoseAt(0.202).orElseThrow();
+        assertEquals(0.202, straight.getX(), 1e-9);
+        assertEquals(0, straight.getY(), 1e-9);
+        assertEquals(0, straight.getRotation().getRadians(), 1e-9);
+
+        Pose2d turning = odometry.getPoseAt(0.75).orElseThrow();
+        assertEquals(0.5, turning.getX(), 1e-9);
+        assertEquals(0, turning.getY(), 1e-9);
+        assertEquals(0.25, turning.getRotation().getRadians(), 1e-9);
+
+        assertEquals(0.5, odometry.getPose().getRotation().getRadians(), 1e-9);
+    }
+}
@@ -0,0 +1,30 @@
+package frc.robot.subsystems;
+
+import static edu.wpi.first.units.Units.RotationsPerSecond;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.lib.Allocations;
+import org.junit.jupiter.api.Test;
+
+class ShooterTest {
+
+    @Test
+    void axleVelocityDoesNotAllocate() {
+        HAL.initialize(500, 0);
+        Shooter shooter = new Shooter();
+        try {
+            double[] sum = new double[1];
+            long bytes = Allocations.measure(10_000, 10_000, () ->
+                sum[0] += shooter.getAxleVelocity().in(RotationsPerSecond)
+            );
+
+            assertEquals(0, bytes, "bytes allocated over 10000 calls");
+            assertSame(shooter.getAxleVelocity(), shooter.getAxleVelocity());
+        } finally {
+            CommandScheduler.getInstance().unregisterSubsystem(shooter);
+        }
+    }
+}